@@ -0,0 +1,334 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+
+// On-disk cache of the slicing data of methods. Entries are keyed by the SHA-256 of the class file
+// declaring the method and the method signature, so they stay valid as long as the class does not
+// change. An entry holds the dependencies of the instructions computed so far (see
+// SliceDependencies), slice results are stored per slicing criterion. Unreadable entries, e.g.
+// with corrupted lengths, are treated like missing ones.
+public class AnalysisCache {
+  // Increase whenever the stored data or the analyses computing it change
+  private static final int FORMAT_VERSION = 2;
+  private static final String DEPENDENCIES_SUFFIX = ".dependencies";
+  private static final String SLICE_SUFFIX = ".slice";
+  // Length written for data which was not computed
+  private static final int NULL_LENGTH = -1;
+  // The code of a method has at most 65535 bytes, which bounds all stored lengths
+  private static final int MAX_LENGTH = 0xffff;
+  private static final long PROCESS_ID = ProcessHandle.current().pid();
+
+  private final Path directory;
+  // Class file digests by byte array (arrays are compared by identity)
+  private final Map<byte[], byte[]> classDigests =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  public AnalysisCache(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  /**
+   * Returns the key of the method declared by the class file. The digest of a class file is
+   * computed once per byte array, so the methods of a (cached) class do not hash it again.
+   */
+  public String getKey(byte[] classBytes, String methodSignature) {
+    byte[] classDigest = classDigests.get(classBytes);
+    if (classDigest == null) {
+      classDigest = DigestUtils.sha256(classBytes);
+      classDigests.put(classBytes, classDigest);
+    }
+    byte[] signatureBytes = methodSignature.getBytes(StandardCharsets.UTF_8);
+    byte[] keyBytes = new byte[classDigest.length + signatureBytes.length];
+    System.arraycopy(classDigest, 0, keyBytes, 0, classDigest.length);
+    System.arraycopy(signatureBytes, 0, keyBytes, classDigest.length, signatureBytes.length);
+    return DigestUtils.sha256Hex(keyBytes);
+  }
+
+  /** Returns the cached dependencies of the method or null if there are none. */
+  public MethodDependencies readDependencies(String key) {
+    try (DataInputStream input = openInput(key + DEPENDENCIES_SUFFIX)) {
+      if (input == null) {
+        return null;
+      }
+      int instructionCount = readLength(input);
+      int[][] dependencies = new int[instructionCount][];
+      for (int index = 0; index < instructionCount; index++) {
+        int[] instructionDependencies = readInts(input);
+        if (instructionDependencies != null) {
+          for (int dependency : instructionDependencies) {
+            if (dependency < 0 || dependency >= instructionCount) {
+              throw new IOException("Invalid instruction index " + dependency);
+            }
+          }
+        }
+        dependencies[index] = instructionDependencies;
+      }
+      BitSet parameterDependentIndexes = readBitSet(input);
+      BitSet baseIndexesToKeep = readBitSet(input);
+      return new MethodDependencies(dependencies, parameterDependentIndexes, baseIndexesToKeep);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  public void writeDependencies(String key, MethodDependencies methodDependencies)
+      throws IOException {
+    write(
+        key + DEPENDENCIES_SUFFIX,
+        output -> {
+          output.writeInt(methodDependencies.dependencies.length);
+          for (int[] instructionDependencies : methodDependencies.dependencies) {
+            writeInts(output, instructionDependencies);
+          }
+          writeBitSet(output, methodDependencies.parameterDependentIndexes);
+          writeBitSet(output, methodDependencies.baseIndexesToKeep);
+        });
+  }
+
+  /** Returns the cached slice of the method for the slicing criterion or null if there is none. */
+  public CachedSlice readSlice(String key, Set<Integer> instructionIndexes) {
+    try (DataInputStream input = openInput(getSliceFileName(key, instructionIndexes))) {
+      if (input == null) {
+        return null;
+      }
+      Set<Integer> instructionsToKeep = readIntSet(input);
+      Set<Integer> instructionsToIgnore = readIntSet(input);
+      int popCount = readLength(input);
+      Map<Integer, Integer> instructionPopMap = new HashMap<>();
+      for (int pop = 0; pop < popCount; pop++) {
+        instructionPopMap.put(input.readInt(), input.readInt());
+      }
+      return new CachedSlice(instructionsToKeep, instructionsToIgnore, instructionPopMap);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  public void writeSlice(String key, Set<Integer> instructionIndexes, CachedSlice slice)
+      throws IOException {
+    write(
+        getSliceFileName(key, instructionIndexes),
+        output -> {
+          writeIntSet(output, slice.instructionsToKeep);
+          writeIntSet(output, slice.instructionsToIgnore);
+          output.writeInt(slice.instructionPopMap.size());
+          for (Entry<Integer, Integer> pop : slice.instructionPopMap.entrySet()) {
+            output.writeInt(pop.getKey());
+            output.writeInt(pop.getValue());
+          }
+        });
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  private static String getSliceFileName(String key, Set<Integer> instructionIndexes) {
+    return key + "-" + DigestUtils.sha256Hex(new TreeSet<>(instructionIndexes).toString())
+        + SLICE_SUFFIX;
+  }
+
+  private DataInputStream openInput(String fileName) throws IOException {
+    DataInputStream input;
+    try {
+      input =
+          new DataInputStream(
+              new GZIPInputStream(
+                  new BufferedInputStream(Files.newInputStream(directory.resolve(fileName)))));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    try {
+      if (input.readInt() == FORMAT_VERSION) {
+        return input;
+      }
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+    input.close();
+    return null;
+  }
+
+  // Writes into a temporary file first, so concurrent readers never see a partial entry. The
+  // temporary file is unique per process and thread, which avoids random temporary file names.
+  private void write(String fileName, EntryWriter entryWriter) throws IOException {
+    Path temporaryFile =
+        directory.resolve(
+            fileName + "." + PROCESS_ID + "-" + Thread.currentThread().getId() + ".tmp");
+    try {
+      try (DataOutputStream output =
+          new DataOutputStream(
+              new GZIPOutputStream(
+                  new BufferedOutputStream(Files.newOutputStream(temporaryFile))))) {
+        output.writeInt(FORMAT_VERSION);
+        entryWriter.write(output);
+      }
+      Files.move(
+          temporaryFile,
+          directory.resolve(fileName),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+  }
+
+  private static int readLength(DataInputStream input) throws IOException {
+    return checkLength(input.readInt());
+  }
+
+  private static int checkLength(int length) throws IOException {
+    if (length < 0 || length > MAX_LENGTH) {
+      throw new IOException("Invalid length " + length);
+    }
+    return length;
+  }
+
+  private static int[] readInts(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    int[] values = new int[checkLength(length)];
+    for (int position = 0; position < values.length; position++) {
+      values[position] = input.readInt();
+    }
+    return values;
+  }
+
+  private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+    if (values == null) {
+      output.writeInt(NULL_LENGTH);
+      return;
+    }
+    output.writeInt(values.length);
+    for (int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  private static BitSet readBitSet(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    long[] words = new long[checkLength(length)];
+    for (int position = 0; position < words.length; position++) {
+      words[position] = input.readLong();
+    }
+    return BitSet.valueOf(words);
+  }
+
+  private static void writeBitSet(DataOutputStream output, BitSet bitSet) throws IOException {
+    if (bitSet == null) {
+      output.writeInt(NULL_LENGTH);
+      return;
+    }
+    long[] words = bitSet.toLongArray();
+    output.writeInt(words.length);
+    for (long word : words) {
+      output.writeLong(word);
+    }
+  }
+
+  private static Set<Integer> readIntSet(DataInputStream input) throws IOException {
+    int[] storedValues = readInts(input);
+    if (storedValues == null) {
+      throw new IOException("Missing set");
+    }
+    Set<Integer> values = new HashSet<>();
+    for (int value : storedValues) {
+      values.add(value);
+    }
+    return values;
+  }
+
+  private static void writeIntSet(DataOutputStream output, Set<Integer> values)
+      throws IOException {
+    writeInts(output, values.stream().mapToInt(Integer::intValue).sorted().toArray());
+  }
+
+  private interface EntryWriter {
+    void write(DataOutputStream output) throws IOException;
+  }
+
+  /**
+   * Criterion-independent slicing data of a method. Dependencies of instructions and sets which
+   * have not been computed are null.
+   */
+  public static class MethodDependencies {
+    private final int[][] dependencies;
+    private final BitSet parameterDependentIndexes;
+    private final BitSet baseIndexesToKeep;
+
+    public MethodDependencies(
+        int[][] dependencies, BitSet parameterDependentIndexes, BitSet baseIndexesToKeep) {
+      this.dependencies = dependencies;
+      this.parameterDependentIndexes = parameterDependentIndexes;
+      this.baseIndexesToKeep = baseIndexesToKeep;
+    }
+
+    public int[][] getDependencies() {
+      return dependencies;
+    }
+
+    public BitSet getParameterDependentIndexes() {
+      return parameterDependentIndexes;
+    }
+
+    public BitSet getBaseIndexesToKeep() {
+      return baseIndexesToKeep;
+    }
+  }
+
+  /** Slice of a method for one slicing criterion. */
+  public static class CachedSlice {
+    private final Set<Integer> instructionsToKeep;
+    private final Set<Integer> instructionsToIgnore;
+    private final Map<Integer, Integer> instructionPopMap;
+
+    public CachedSlice(
+        Set<Integer> instructionsToKeep,
+        Set<Integer> instructionsToIgnore,
+        Map<Integer, Integer> instructionPopMap) {
+      this.instructionsToKeep = instructionsToKeep;
+      this.instructionsToIgnore = instructionsToIgnore;
+      this.instructionPopMap = instructionPopMap;
+    }
+
+    public Set<Integer> getInstructionsToKeep() {
+      return instructionsToKeep;
+    }
+
+    public Set<Integer> getInstructionsToIgnore() {
+      return instructionsToIgnore;
+    }
+
+    public Map<Integer, Integer> getInstructionPopMap() {
+      return instructionPopMap;
+    }
+  }
+}
@@ -2,10 +2,8 @@ package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.shrike.shrikeBT.*;
 import com.ibm.wala.shrike.shrikeBT.shrikeCT.ClassInstrumenter;
-import com.ibm.wala.shrike.shrikeBT.shrikeCT.OfflineInstrumenter;
 import com.ibm.wala.shrike.shrikeCT.ClassReader;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
-import de.uniks.vs.methodresourceprediction.utils.InstrumenterComparator;
 import de.uniks.vs.methodresourceprediction.utils.Utilities;
 import java.io.File;
 import java.io.IOException;
@@ -75,34 +73,31 @@ public class Analyzer {
   }
 
   public static ClassInstrumenter[] getClassInstrumenters(File inputJar) throws IOException {
-    OfflineInstrumenter inst = new OfflineInstrumenter();
-    inst.addInputJar(inputJar);
-    inst.beginTraversal();
-
     List<ClassInstrumenter> classInstrumenters = new ArrayList<>();
-
-    ClassInstrumenter ci;
-    while ((ci = inst.nextClass()) != null) {
-      classInstrumenters.add(ci);
+    try {
+      JarClassIndex.ClassIterator classIterator = JarClassIndex.of(inputJar).getClassIterator();
+      ClassInstrumenter classInstrumenter;
+      while ((classInstrumenter = classIterator.nextClass()) != null) {
+        classInstrumenters.add(classInstrumenter);
+      }
+      return classInstrumenters.toArray(new ClassInstrumenter[0]);
+    } catch (InvalidClassFileException e) {
+      throw new IOException("Invalid class file in " + inputJar, e);
     }
-    return classInstrumenters.toArray(new ClassInstrumenter[0]);
   }
 
   public static ClassInstrumenter getClassInstrumenter(File inputJar, String className)
       throws IOException {
-    Optional<ClassInstrumenter> optionalClassInstrumenter =
-        Arrays.stream(getClassInstrumenters(inputJar))
-            .filter(
-                ci -> {
-                  try {
-                    String name = "L" + ci.getReader().getName() + ";";
-                    return name.equals(className);
-                  } catch (InvalidClassFileException e) {
-                    return false;
-                  }
-                })
-            .findFirst();
-    return optionalClassInstrumenter.orElse(null);
+    // The class name is "Lpackage/Class;"
+    if (!className.startsWith("L") || !className.endsWith(";")) {
+      return null;
+    }
+    try {
+      return JarClassIndex.of(inputJar)
+          .getClassInstrumenter(className.substring(1, className.length() - 1));
+    } catch (InvalidClassFileException e) {
+      return null;
+    }
   }
 
   public static MethodData[] getMethods(ClassInstrumenter classInstrumenter)
@@ -134,27 +129,10 @@ public class Analyzer {
 
   public static IInstruction[] getInstructions(File inputJar, String methodSignature)
       throws IOException, InvalidClassFileException {
-    InstrumenterComparator comparator = InstrumenterComparator.of(methodSignature);
-
-    MethodData md = null;
-    ClassInstrumenter[] classInstrumenters = getClassInstrumenters(inputJar);
-    for (ClassInstrumenter classInstrumenter : classInstrumenters) {
-      if (comparator.equals(classInstrumenter)) {
-        MethodData[] methods = getMethods(classInstrumenter);
-        for (MethodData method : methods) {
-          if (comparator.equals(method)) {
-            md = method;
-            break;
-          }
-        }
-      }
-    }
-
+    MethodData md = JarClassIndex.of(inputJar).getMethodData(methodSignature);
     if (md == null) {
       return null;
     }
-
-    // Iterate each class in the input program and instrument it
     return md.getInstructions();
   }
 
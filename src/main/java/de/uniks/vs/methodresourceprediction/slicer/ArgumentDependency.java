@@ -31,7 +31,7 @@ public class ArgumentDependency extends SlicerGraph<Integer> {
       return graph;
     }
 
-    StackTrace stackTrace = new StackTrace(controlFlow.getMethodData());
+    StackTrace stackTrace = controlFlow.getStackTrace();
 
     graph = new DefaultDirectedGraph<>(DefaultEdge.class);
 
@@ -41,20 +41,19 @@ public class ArgumentDependency extends SlicerGraph<Integer> {
 
     stackTrace.forEachException(
         (index, stacks) -> {
-          for (Stack<Integer> stack : stacks) {
-            for (Integer exceptionInstructionIndex : stack) {
-              graph.addVertex(exceptionInstructionIndex);
-              graph.addEdge(index, exceptionInstructionIndex);
-            }
+          for (IntStack stack : stacks) {
+            stack.forEach(
+                exceptionInstructionIndex -> {
+                  graph.addVertex(exceptionInstructionIndex);
+                  graph.addEdge(index, exceptionInstructionIndex);
+                });
           }
         });
 
     stackTrace.forEachPopped(
         (index, stacks) -> {
-          for (Stack<Integer> stack : stacks) {
-            for (Integer poppedInstructionIndex : stack) {
-              graph.addEdge(index, poppedInstructionIndex);
-            }
+          for (IntStack stack : stacks) {
+            stack.forEach(poppedInstructionIndex -> graph.addEdge(index, poppedInstructionIndex));
           }
         });
     return graph;
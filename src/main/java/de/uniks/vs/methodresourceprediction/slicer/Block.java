@@ -1,65 +1,103 @@
 package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.shrike.shrikeBT.IInstruction;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+// A block is a contiguous range of instructions [lowestIndex, highestIndex] of a method. It shares
+// the instruction array of the method instead of copying the instructions.
 public class Block {
-  private Map<Integer, IInstruction> instructions;
-  private int id;
+  private final int id;
+  private final IInstruction[] instructions;
+  private final int lowestIndex;
+  private final int highestIndex;
 
-  public Block(int id) {
+  private Map<Integer, IInstruction> instructionMap;
+  private List<Integer> instructionIndexes;
+
+  public Block(int id, IInstruction[] instructions, int lowestIndex, int highestIndex) {
+    if (lowestIndex < 0 || highestIndex < lowestIndex || highestIndex >= instructions.length) {
+      throw new IllegalArgumentException(
+          "Invalid block range [" + lowestIndex + ", " + highestIndex + "]");
+    }
     this.id = id;
-    instructions = new LinkedHashMap<>();
+    this.instructions = instructions;
+    this.lowestIndex = lowestIndex;
+    this.highestIndex = highestIndex;
   }
 
+  /** Returns an unmodifiable view of the block instructions ordered by their index. */
   public Map<Integer, IInstruction> getInstructions() {
-    return instructions;
+    if (instructionMap != null) {
+      return instructionMap;
+    }
+
+    instructionMap = new InstructionMap();
+    return instructionMap;
   }
 
-  public void addInstruction(int index, IInstruction instruction) {
-    instructions.put(index, instruction);
+  public IInstruction getInstruction(int index) {
+    return contains(index) ? instructions[index] : null;
+  }
+
+  public boolean contains(int index) {
+    return index >= lowestIndex && index <= highestIndex;
+  }
+
+  public int size() {
+    return highestIndex - lowestIndex + 1;
   }
 
   public Integer getHighestIndex() {
-    Integer highestIndex = null;
-    for (int index : getInstructions().keySet()) {
-      if (highestIndex == null) {
-        highestIndex = index;
-        continue;
-      }
-      highestIndex = Math.max(highestIndex, index);
-    }
     return highestIndex;
   }
 
   public Integer getLowestIndex() {
-    Integer lowestIndex = null;
-    for (int index : getInstructions().keySet()) {
-      if (lowestIndex == null) {
-        lowestIndex = index;
-        continue;
-      }
-      lowestIndex = Math.min(lowestIndex, index);
-    }
     return lowestIndex;
   }
 
+  /** Returns an unmodifiable view of the sorted block instruction indexes. */
   public List<Integer> getInstructionIndexes() {
-    ArrayList<Integer> instructionIndexList = new ArrayList<>(getInstructions().keySet());
-    instructionIndexList.sort(Integer::compareTo);
-    return instructionIndexList;
+    if (instructionIndexes != null) {
+      return instructionIndexes;
+    }
+
+    instructionIndexes =
+        new AbstractList<>() {
+          @Override
+          public Integer get(int position) {
+            if (position < 0 || position >= size()) {
+              throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size());
+            }
+            return lowestIndex + position;
+          }
+
+          @Override
+          public int size() {
+            return Block.this.size();
+          }
+
+          @Override
+          public boolean contains(Object o) {
+            return o instanceof Integer && Block.this.contains((Integer) o);
+          }
+        };
+    return instructionIndexes;
   }
 
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("Block " + id + "\n");
-    for (Entry<Integer, IInstruction> entry : instructions.entrySet()) {
-      builder.append("  " + entry.getKey() + ": " + entry.getValue().toString() + "\n");
+    for (int index = lowestIndex; index <= highestIndex; index++) {
+      builder.append("  " + index + ": " + instructions[index].toString() + "\n");
     }
     return builder.toString();
   }
@@ -67,4 +105,54 @@ public class Block {
   public int getId() {
     return id;
   }
+
+  private class InstructionMap extends AbstractMap<Integer, IInstruction> {
+    @Override
+    public int size() {
+      return Block.this.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof Integer && contains((Integer) key);
+    }
+
+    @Override
+    public IInstruction get(Object key) {
+      return containsKey(key) ? instructions[(Integer) key] : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, IInstruction>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public int size() {
+          return Block.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<Integer, IInstruction>> iterator() {
+          return new Iterator<>() {
+            private int index = lowestIndex;
+
+            @Override
+            public boolean hasNext() {
+              return index <= highestIndex;
+            }
+
+            @Override
+            public Entry<Integer, IInstruction> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              Entry<Integer, IInstruction> entry =
+                  new SimpleImmutableEntry<>(index, instructions[index]);
+              index++;
+              return entry;
+            }
+          };
+        }
+      };
+    }
+  }
 }
@@ -16,6 +16,9 @@ import org.jgrapht.io.ExportException;
 public class BlockDependency extends SlicerGraph<Block> {
   private ControlFlow controlFlow;
   private Graph<Block, DefaultEdge> graph;
+  // Blocks by id and the id of the block containing each instruction
+  private Block[] blocks;
+  private int[] instructionToBlockId;
   private List<List<Block>> simpleCycles;
 
   public BlockDependency(ControlFlow controlFlowGraph) {
@@ -32,13 +35,13 @@ public class BlockDependency extends SlicerGraph<Block> {
     int blockId = 0;
     IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
     graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+    blocks = new Block[instructions.length];
+    instructionToBlockId = new int[instructions.length];
     for (int index = 0; index < instructions.length; ) {
       // Build up blocks
-      Block block = new Block(blockId++);
-      graph.addVertex(block);
-
+      final int blockStartIndex = index;
       IInstruction instruction = instructions[index];
-      block.addInstruction(index, instruction);
+      instructionToBlockId[index] = blockId;
 
       // Group subsequent instructions until the stack size equals 0. A block is
       // complete, if the stack is empty (=0) after some instructions.
@@ -52,8 +55,13 @@ public class BlockDependency extends SlicerGraph<Block> {
           throw new IllegalStateException("Stack cannot be negative. Is: " + stack);
         }
 
-        block.addInstruction(index, instruction);
+        instructionToBlockId[index] = blockId;
       }
+
+      Block block = new Block(blockId, instructions, blockStartIndex, index - 1);
+      graph.addVertex(block);
+      blocks[blockId] = block;
+      blockId++;
       //			System.out.println(block);
     }
 
@@ -107,12 +115,11 @@ public class BlockDependency extends SlicerGraph<Block> {
   }
 
   public Block getBlockForIndex(int index) throws IOException, InvalidClassFileException {
-    for (Block block : getGraph().vertexSet()) {
-      if (block.getInstructions().containsKey(index)) {
-        return block;
-      }
+    getGraph();
+    if (index < 0 || index >= instructionToBlockId.length) {
+      return null;
     }
-    return null;
+    return blocks[instructionToBlockId[index]];
   }
 
   @Override
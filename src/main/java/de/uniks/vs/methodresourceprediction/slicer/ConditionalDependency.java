@@ -29,8 +29,6 @@ public class ConditionalDependency extends SlicerGraph<Integer> {
     }
     graph = new DefaultDirectedGraph<>(DefaultEdge.class);
 
-    StackTrace stackTrace = new StackTrace(controlFlow.getMethodData());
-
     // Iterate all instructions to find those calling a constructor
     IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
     for (int instructionIndex = 0; instructionIndex < instructions.length; instructionIndex++) {
@@ -2,9 +2,12 @@ package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.shrike.shrikeBT.IInstruction;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.dominance.DominatorTree;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.ImmediatePostDominance;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -51,25 +54,47 @@ public class ControlDependency extends SlicerGraph<Integer> {
 
     // Version 2 (Second definition)
     // http://infolab.stanford.edu/~ullman/dragon/w06/lectures/cs243-lec08-wei.pdf
-    //		final Graph<Integer, DefaultEdge> immediatePostDominanceGraph =
-    // immediatePostDominance.getGraph();
-    final Graph<Integer, DefaultEdge> strictPostDominanceGraph =
-        immediatePostDominance.getStrictPostDominance().getPostDominance().getGraph();
-
-    for (Integer w : controlFlowGraph.vertexSet()) {
-      for (DefaultEdge cfgEdge : controlFlowGraph.edgeSet()) {
-        Integer u = controlFlowGraph.getEdgeSource(cfgEdge);
-        Integer v = controlFlowGraph.getEdgeTarget(cfgEdge);
-
-        // w post-dominates v
-        if (strictPostDominanceGraph.containsEdge(w, v)) {
-          if (!w.equals(u)) {
-            if (!strictPostDominanceGraph.containsEdge(w, u)) {
-              graph.addEdge(u, w);
-              break;
-            }
+    // w is control dependent on u if there is a CFG edge u -> v such that w
+    // post-dominates v but does not post-dominate u. These are the nodes on the
+    // post-dominator tree path from v up to (excluding) the immediate post-dominator
+    // of u, i.e. u lies in the post-dominance frontier of w (Cytron et al.).
+    // Every node is attributed to the first such edge in CFG edge order.
+    final DominatorTree postDominatorTree =
+        immediatePostDominance.getStrictPostDominance().getPostDominance().getPostDominatorTree();
+
+    Map<Integer, Integer> controllingNodes = new HashMap<>();
+    for (DefaultEdge cfgEdge : controlFlowGraph.edgeSet()) {
+      Integer u = controlFlowGraph.getEdgeSource(cfgEdge);
+      Integer v = controlFlowGraph.getEdgeTarget(cfgEdge);
+
+      if (!postDominatorTree.isReachable(u)) {
+        // u cannot reach END, so every node post-dominates u
+        continue;
+      }
+      if (!postDominatorTree.isReachable(v)) {
+        // v cannot reach END, so every node post-dominates v
+        for (Integer w : controlFlowGraph.vertexSet()) {
+          if (!w.equals(u) && !postDominatorTree.dominates(w, u)) {
+            controllingNodes.putIfAbsent(w, u);
           }
         }
+        continue;
+      }
+
+      Integer immediatePostDominatorOfU = postDominatorTree.getImmediateDominator(u);
+      Integer w = v;
+      while (w != null && !w.equals(immediatePostDominatorOfU)) {
+        if (!w.equals(u)) {
+          controllingNodes.putIfAbsent(w, u);
+        }
+        w = postDominatorTree.getImmediateDominator(w);
+      }
+    }
+
+    for (Integer w : controlFlowGraph.vertexSet()) {
+      Integer u = controllingNodes.get(w);
+      if (u != null) {
+        graph.addEdge(u, w);
       }
     }
 
@@ -9,6 +9,7 @@ import com.ibm.wala.shrike.shrikeBT.shrikeCT.OfflineInstrumenter;
 import com.ibm.wala.shrike.shrikeCT.ClassReader;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import com.ibm.wala.util.collections.Pair;
+import de.uniks.vs.methodresourceprediction.slicer.loop.LoopNestingForest;
 import de.uniks.vs.methodresourceprediction.utils.InstrumenterComparator;
 import org.jgrapht.alg.cycle.JohnsonSimpleCycles;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -27,9 +28,12 @@ public class ControlFlow extends SlicerGraph<Integer> {
   private String methodSignature;
 
   private MethodData methodData;
+  private Map<Integer, IInstruction> instructionMap;
 
   private DefaultDirectedGraph<Integer, DefaultEdge> graph;
   private List<List<Integer>> simpleCycles;
+  private LoopNestingForest loopNestingForest;
+  private Set<Integer> instructionsInCycles;
   private StackTrace stackTrace;
   private List<Pair<Integer, Integer>> loopPairs;
   private Integer startNode;
@@ -48,7 +52,8 @@ public class ControlFlow extends SlicerGraph<Integer> {
       return stackTrace;
     }
 
-    stackTrace = new StackTrace(getMethodData());
+    // Reuse this control flow graph and instruction map instead of building new ones
+    stackTrace = new StackTrace(this);
     return stackTrace;
   }
 
@@ -102,6 +107,15 @@ public class ControlFlow extends SlicerGraph<Integer> {
     return simpleCycles;
   }
 
+  public LoopNestingForest getLoopNestingForest() throws IOException, InvalidClassFileException {
+    if (loopNestingForest != null) {
+      return loopNestingForest;
+    }
+
+    loopNestingForest = new LoopNestingForest(getGraph());
+    return loopNestingForest;
+  }
+
   public List<Pair<Integer, Integer>> getLoopPairs() throws IOException, InvalidClassFileException {
     if (loopPairs != null) {
       return loopPairs;
@@ -124,29 +138,31 @@ public class ControlFlow extends SlicerGraph<Integer> {
   }
 
   public boolean isPartOfCycle(int instructionIndex) throws IOException, InvalidClassFileException {
-    for (List<Integer> cycle : getSimpleCycles()) {
-      if (cycle.contains(instructionIndex)) {
-        return true;
-      }
-    }
-    return false;
+    // An instruction is part of a simple cycle iff it is part of a loop
+    return getLoopNestingForest().isInLoop(instructionIndex);
   }
 
   public Map<Integer, IInstruction> getInstructionMap() throws IOException, InvalidClassFileException {
+    if (instructionMap != null) {
+      return instructionMap;
+    }
+
     final IInstruction[] instructions = getMethodData().getInstructions();
     final Map<Integer, IInstruction> instructionMap = new LinkedHashMap<>();
     IntStream.range(0, instructions.length).forEach(i -> instructionMap.put(i, instructions[i]));
-    return instructionMap;
+    this.instructionMap = Collections.unmodifiableMap(instructionMap);
+    return this.instructionMap;
   }
 
   public Set<Integer> getInstructionsInCycles() throws IOException, InvalidClassFileException {
-    Set<Integer> instructionsInCycleSet = new HashSet<>();
-    for (int index = 0; index < getMethodData().getInstructions().length; index++) {
-      if (isPartOfCycle(index)) {
-        instructionsInCycleSet.add(index);
-      }
+    if (instructionsInCycles != null) {
+      return instructionsInCycles;
     }
-    return instructionsInCycleSet;
+
+    Set<Integer> instructionsInCycleSet = new HashSet<>();
+    getLoopNestingForest().getInstructionsInLoops().stream().forEach(instructionsInCycleSet::add);
+    instructionsInCycles = Collections.unmodifiableSet(instructionsInCycleSet);
+    return instructionsInCycles;
   }
 
   @Override
@@ -175,6 +191,12 @@ public class ControlFlow extends SlicerGraph<Integer> {
       return methodData;
     }
 
+    if (Objects.isNull(classPath) && !Objects.isNull(inputPath)) {
+      // Read only the class declaring the method instead of traversing the whole jar
+      methodData = JarClassIndex.of(new File(inputPath)).getMethodData(methodSignature);
+      return methodData;
+    }
+
     InstrumenterComparator comparator = InstrumenterComparator.of(methodSignature);
 
     OfflineInstrumenter inst = new OfflineInstrumenter();
@@ -237,15 +259,15 @@ public class ControlFlow extends SlicerGraph<Integer> {
   public boolean inSameCycle(
       int instructionIndexA, int instructionIndexB, int... moreInstructionIndexes)
       throws IOException, InvalidClassFileException {
-    // TODO What about sub-cycle handling?
-    if (!getCyclesForInstruction(instructionIndexA)
-        .equals(getCyclesForInstruction(instructionIndexB))) {
+    // Instructions are in the same cycle if they are part of exactly the same
+    // (nested) loops
+    LoopNestingForest loopNestingForest = getLoopNestingForest();
+    if (!loopNestingForest.inSameLoop(instructionIndexA, instructionIndexB)) {
       return false;
     }
     if (moreInstructionIndexes != null) {
       for (int instructionIndex : moreInstructionIndexes) {
-        if (!getCyclesForInstruction(instructionIndexA)
-            .equals(getCyclesForInstruction(instructionIndex))) {
+        if (!loopNestingForest.inSameLoop(instructionIndexA, instructionIndex)) {
           return false;
         }
       }
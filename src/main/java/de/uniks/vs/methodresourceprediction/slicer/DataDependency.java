@@ -14,7 +14,6 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.Stack;
 
 public class DataDependency extends SlicerGraph<Integer> {
   private ControlFlow controlFlow;
@@ -56,17 +55,17 @@ public class DataDependency extends SlicerGraph<Integer> {
     // Add a vertex for each instruction index
     cfg.vertexSet().forEach(dependencyGraph::addVertex);
 
-    // Add edges to the graph if there is a data dependency. Start with iterating
-    // for each instruction index. For each instruction, we analyze all preceding
-    // instructions if there is a data dependency.
+    // Add edges to the graph if there is a data dependency. Loads and gets depend on
+    // all stores and puts of the same variable or field reaching them, which is
+    // computed for all instructions at once.
+    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
+    ReachingDefinitions reachingDefinitions = new ReachingDefinitions(cfg, instructions);
     for (int instructionIndex : cfg.vertexSet()) {
-      buildGraphForVertex(
-          cfg,
+      addEdgesForVertex(
           hasThis,
           methodParametersLength,
           instructionIndex,
-          instructionIndex,
-          new HashSet<>(),
+          reachingDefinitions,
           dependencyGraph);
     }
     return dependencyGraph;
@@ -99,41 +98,32 @@ public class DataDependency extends SlicerGraph<Integer> {
     return dataDependentInstructionSet;
   }
 
-  private void buildGraphForVertex(
-      Graph<Integer, DefaultEdge> cfg,
+  private void addEdgesForVertex(
       boolean hasThis,
       int methodParameters,
       int focusedIndex,
-      int instructionIndex,
-      Set<Integer> visitedVertices,
+      ReachingDefinitions reachingDefinitions,
       Graph<Integer, DefaultEdge> dependencyGraph)
       throws IOException, InvalidClassFileException {
-    // We skip already visited instructions
-    if (!visitedVertices.add(instructionIndex)) {
-      return;
-    }
     IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
     IInstruction instructionA = instructions[focusedIndex];
 
     // TODO Uncomment 3 if's
     // Check data dependency for ArrayStoreInstruction using stack simulation
     if (instructionA instanceof ArrayStoreInstruction) {
-      List<Stack<Integer>> poppedStacks =
-          controlFlow.getStackTrace().getPoppedStackAtInstructionIndex(focusedIndex);
-      for (Stack<Integer> poppedStack : poppedStacks) {
-        poppedStack.pop(); // elementInstructionIndex
-        poppedStack.pop(); // indexInstructionIndex
-        Integer arrayRefInstructionIndex = poppedStack.pop();
+      List<IntStack> poppedStacks = controlFlow.getStackTrace().getPoppedStacks(focusedIndex);
+      for (IntStack poppedStack : poppedStacks) {
+        // Skip elementInstructionIndex and indexInstructionIndex
+        int arrayRefInstructionIndex = poppedStack.pop().pop().peek();
         dependencyGraph.addEdge(focusedIndex, arrayRefInstructionIndex);
       }
     }
 
     // Check data dependency for DupInstruction using stack simulation
     if (instructionA instanceof DupInstruction) {
-      List<Stack<Integer>> poppedStacks =
-          controlFlow.getStackTrace().getPoppedStackAtInstructionIndex(focusedIndex);
-      for (Stack<Integer> poppedStack : poppedStacks) {
-        Integer elementInstructionIndex = poppedStack.pop();
+      List<IntStack> poppedStacks = controlFlow.getStackTrace().getPoppedStacks(focusedIndex);
+      for (IntStack poppedStack : poppedStacks) {
+        int elementInstructionIndex = poppedStack.peek();
         dependencyGraph.addEdge(focusedIndex, elementInstructionIndex);
       }
     }
@@ -144,71 +134,27 @@ public class DataDependency extends SlicerGraph<Integer> {
       // Exclude void return type since there cannot be an object on the stack to
       // which a data dependency could exist
       if (!instruction.getType().contentEquals(Constants.TYPE_void)) {
-        List<Stack<Integer>> poppedStacks =
-            controlFlow.getStackTrace().getPoppedStackAtInstructionIndex(focusedIndex);
-        for (Stack<Integer> poppedStack : poppedStacks) {
-          Integer elementInstructionIndex = poppedStack.pop();
+        List<IntStack> poppedStacks = controlFlow.getStackTrace().getPoppedStacks(focusedIndex);
+        for (IntStack poppedStack : poppedStacks) {
+          int elementInstructionIndex = poppedStack.peek();
           dependencyGraph.addEdge(focusedIndex, elementInstructionIndex);
         }
       }
     }
 
-    // Only data dependencies between different instructions are interesting
-    if (focusedIndex != instructionIndex) {
-      // TODO Disabled for now
-      //			instructionA = Utilities.rewriteVarIndex(varIndexesToRenumber, instructionA,
-      // focusedIndex);
-
-      boolean hasDataDependency = false;
-      if (instructionIndex < 0) {
-        // Check dependency against method parameter
-        if (checkDataDependency(instructionA, hasThis, methodParameters, instructionIndex)) {
-          hasDataDependency = true;
-        }
-      } else {
-        // Check dependencies for both normal instructions
-        IInstruction instructionB = instructions[instructionIndex];
-        // TODO Disabled for now
-        //				instructionB = Utilities.rewriteVarIndex(varIndexesToRenumber, instructionB,
-        // instructionIndex);
-        if (checkDataDependency(instructionA, instructionB)) {
-          hasDataDependency = true;
-        }
-      }
-
-      if (hasDataDependency && !dependencyGraph.containsEdge(focusedIndex, instructionIndex)) {
-        dependencyGraph.addEdge(focusedIndex, instructionIndex);
-      }
-    }
-
-    // Check instruction dependency against "this"
-    buildGraphForVertex(
-        cfg, hasThis, methodParameters, focusedIndex, -1, visitedVertices, dependencyGraph);
-    // Check instruction dependency against method parameters
-    for (int methodParameterIndex = 1;
+    // Check instruction dependency against "this" and the method parameters
+    for (int methodParameterIndex = 0;
         methodParameterIndex <= methodParameters;
         methodParameterIndex++) {
-      int index = -(methodParameterIndex + (hasThis ? 1 : 0));
-      buildGraphForVertex(
-          cfg, hasThis, methodParameters, focusedIndex, index, visitedVertices, dependencyGraph);
+      int index = methodParameterIndex == 0 ? -1 : -(methodParameterIndex + (hasThis ? 1 : 0));
+      if (checkDataDependency(instructionA, hasThis, methodParameters, index)) {
+        dependencyGraph.addEdge(focusedIndex, index);
+      }
     }
 
-    if (instructionIndex < 0) {
-      // There cannot be any control flow for method parameters
-      return;
-    }
-
-    // Recursively analyze preceding instructions
-    for (DefaultEdge edge : cfg.incomingEdgesOf(instructionIndex)) {
-      int sourceInstructionIndex = cfg.getEdgeSource(edge);
-      buildGraphForVertex(
-          cfg,
-          hasThis,
-          methodParameters,
-          focusedIndex,
-          sourceInstructionIndex,
-          visitedVertices,
-          dependencyGraph);
+    // Check instruction dependency against preceding stores and puts
+    for (int instructionIndex : reachingDefinitions.getUsedDefinitions(focusedIndex)) {
+      dependencyGraph.addEdge(focusedIndex, instructionIndex);
     }
   }
 
@@ -261,34 +207,6 @@ public class DataDependency extends SlicerGraph<Integer> {
     return false;
   }
 
-  private static boolean checkDataDependency(IInstruction instructionA, IInstruction instructionB) {
-    // A data dependency exists, if a there is a load instruction where are a
-    // preceding store instruction in all possible execution paths.
-    if (instructionA instanceof ILoadInstruction) {
-      ILoadInstruction loadInstruction = (ILoadInstruction) instructionA;
-      if (instructionB instanceof IStoreInstruction) {
-        IStoreInstruction storeInstruction = (IStoreInstruction) instructionB;
-        if (loadInstruction.getVarIndex() == storeInstruction.getVarIndex()) {
-          return true;
-        }
-      }
-    }
-
-    // A data dependency exists, if a there is a put instruction where are a
-    // preceding get instruction in all possible execution paths.
-    if (instructionA instanceof IGetInstruction) {
-      IGetInstruction getInstruction = (IGetInstruction) instructionA;
-      if (instructionB instanceof IPutInstruction) {
-        IPutInstruction putInstruction = (IPutInstruction) instructionB;
-        if (getInstruction.getClassType().contentEquals(putInstruction.getClassType())
-            && getInstruction.getFieldName().contentEquals(putInstruction.getFieldName())) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
   @Override
   protected String dotPrint() throws IOException, InvalidClassFileException, ExportException {
     IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
@@ -0,0 +1,176 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+
+// Printed slice results of all methods of a jar grouped by class, together with the hash of every
+// class file and the slicing criterion they were computed for. The slicing is intraprocedural, so
+// the results of a class stay valid as long as its class file and the criterion do not change and
+// a new build of the jar only needs to re-slice its changed classes. Classes with methods which
+// could not be sliced are stored as incomplete and are sliced again by the next run.
+public class IncrementalSliceResults {
+  // Increase whenever the stored data or the analyses computing it change
+  private static final int FORMAT_VERSION = 2;
+
+  private final int[] instructionIndexes;
+  private final Map<String, ClassSliceResults> classSliceResults = new LinkedHashMap<>();
+
+  public IncrementalSliceResults(Set<Integer> instructionIndexes) {
+    this.instructionIndexes =
+        instructionIndexes.stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
+
+  public static String getClassHash(byte[] classBytes) {
+    return DigestUtils.sha256Hex(classBytes);
+  }
+
+  /**
+   * Reads the results of a previous run.
+   *
+   * @return the results or null if there are no (readable) results for the slicing criterion
+   */
+  public static IncrementalSliceResults read(Path path, Set<Integer> instructionIndexes) {
+    IncrementalSliceResults results = new IncrementalSliceResults(instructionIndexes);
+    try (DataInputStream input =
+        new DataInputStream(
+            new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))))) {
+      if (input.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      int[] previousInstructionIndexes = new int[input.readInt()];
+      for (int position = 0; position < previousInstructionIndexes.length; position++) {
+        previousInstructionIndexes[position] = input.readInt();
+      }
+      if (!Arrays.equals(previousInstructionIndexes, results.instructionIndexes)) {
+        return null;
+      }
+
+      int classCount = input.readInt();
+      for (int classIndex = 0; classIndex < classCount; classIndex++) {
+        String entryName = readString(input);
+        String classHash = readString(input);
+        boolean complete = input.readBoolean();
+        List<String> sliceResults = new ArrayList<>();
+        int sliceResultCount = input.readInt();
+        for (int sliceResultIndex = 0; sliceResultIndex < sliceResultCount; sliceResultIndex++) {
+          sliceResults.add(readString(input));
+        }
+        results.put(entryName, classHash, sliceResults, complete);
+      }
+    } catch (IOException e) {
+      // No (readable) results of a previous run
+      return null;
+    }
+    return results;
+  }
+
+  public void write(Path path) throws IOException {
+    // Write into a temporary file first, so an aborted run keeps the previous results
+    Path directory = path.toAbsolutePath().getParent();
+    Path temporaryFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream output =
+          new DataOutputStream(
+              new GZIPOutputStream(
+                  new BufferedOutputStream(Files.newOutputStream(temporaryFile))))) {
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(instructionIndexes.length);
+        for (int instructionIndex : instructionIndexes) {
+          output.writeInt(instructionIndex);
+        }
+
+        output.writeInt(classSliceResults.size());
+        for (Entry<String, ClassSliceResults> entry : classSliceResults.entrySet()) {
+          writeString(output, entry.getKey());
+          writeString(output, entry.getValue().classHash);
+          output.writeBoolean(entry.getValue().complete);
+          output.writeInt(entry.getValue().sliceResults.size());
+          for (String sliceResult : entry.getValue().sliceResults) {
+            writeString(output, sliceResult);
+          }
+        }
+      }
+      Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /**
+   * Returns the slice results of the class (jar entry) if its class file has the given hash.
+   *
+   * @return the slice results or null if the class is unknown, has changed or is incomplete
+   */
+  public List<String> get(String entryName, String classHash) {
+    ClassSliceResults results = classSliceResults.get(entryName);
+    if (results == null || !results.complete || !results.classHash.equals(classHash)) {
+      return null;
+    }
+    return results.sliceResults;
+  }
+
+  /** Adds the slice results of all methods of the class (jar entry). */
+  public void put(String entryName, String classHash, List<String> sliceResults) {
+    put(entryName, classHash, sliceResults, true);
+  }
+
+  /**
+   * Adds the slice results of the class (jar entry). The results of an incomplete class (some of
+   * its methods could not be sliced) are part of {@link #getSliceResults()} but are not returned
+   * by {@link #get(String, String)}, so the class is sliced again.
+   */
+  public void put(String entryName, String classHash, List<String> sliceResults, boolean complete) {
+    classSliceResults.put(entryName, new ClassSliceResults(classHash, sliceResults, complete));
+  }
+
+  /** Returns the slice results of all classes in the order they were added. */
+  public List<String> getSliceResults() {
+    List<String> sliceResults = new ArrayList<>();
+    for (ClassSliceResults results : classSliceResults.values()) {
+      sliceResults.addAll(results.sliceResults);
+    }
+    return sliceResults;
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // DataOutput.writeUTF is limited to 64 KB, printed slice results can be larger
+  private static void writeString(DataOutputStream output, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static class ClassSliceResults {
+    private final String classHash;
+    private final List<String> sliceResults;
+    private final boolean complete;
+
+    ClassSliceResults(String classHash, List<String> sliceResults, boolean complete) {
+      this.classHash = classHash;
+      this.sliceResults = sliceResults;
+      this.complete = complete;
+    }
+  }
+}
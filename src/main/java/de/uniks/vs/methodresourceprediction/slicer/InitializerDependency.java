@@ -12,7 +12,6 @@ import org.jgrapht.io.ExportException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 public class InitializerDependency extends SlicerGraph<Integer> {
   private BlockDependency blockDependency;
@@ -29,7 +28,7 @@ public class InitializerDependency extends SlicerGraph<Integer> {
     }
     graph = new DefaultDirectedGraph<>(DefaultEdge.class);
 
-    StackTrace stackTrace = new StackTrace(blockDependency.getControlFlow().getMethodData());
+    StackTrace stackTrace = blockDependency.getControlFlow().getStackTrace();
 
     // Iterate all instructions to find those calling a constructor
     IInstruction[] instructions =
@@ -49,15 +48,14 @@ public class InitializerDependency extends SlicerGraph<Integer> {
 
       // Get popped elements stack for InvokeInstruction to figure out on which top stack element
       // the constructor is called
-      List<Stack<Integer>> poppedStacks =
-          stackTrace.getPoppedStackAtInstructionIndex(instructionIndex);
+      List<IntStack> poppedStacks = stackTrace.getPoppedStacks(instructionIndex);
       if (poppedStacks.isEmpty()) {
         throw new RuntimeException(
             "There must be an object popped by an constructor invoke instruction");
       }
-      for (Stack<Integer> poppedStack : poppedStacks) {
+      for (IntStack poppedStack : poppedStacks) {
         // The last popped element (arguments were popped before) is the object
-        int poppedInstructionIndex = poppedStack.firstElement();
+        int poppedInstructionIndex = poppedStack.get(0);
 
         graph.addVertex(poppedInstructionIndex);
         graph.addEdge(poppedInstructionIndex, instructionIndex);
@@ -1,9 +1,12 @@
 package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.shrike.shrikeBT.MethodEditor;
+import com.ibm.wala.shrike.shrikeBT.MethodEditor.Patch;
 
 public class InstrumentedMethod {
   private MethodEditor methodEditor;
+  // Code to run once in the static initializer of the class, null if there is none
+  private Patch staticInitializerPatch;
 
   public InstrumentedMethod(MethodEditor methodEditor) {
     setMethodEditor(methodEditor);
@@ -16,4 +19,12 @@ public class InstrumentedMethod {
   public void setMethodEditor(MethodEditor methodEditor) {
     this.methodEditor = methodEditor;
   }
+
+  public Patch getStaticInitializerPatch() {
+    return staticInitializerPatch;
+  }
+
+  public void setStaticInitializerPatch(Patch staticInitializerPatch) {
+    this.staticInitializerPatch = staticInitializerPatch;
+  }
 }
@@ -2,30 +2,39 @@ package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.core.util.strings.StringStuff;
 import com.ibm.wala.shrike.shrikeBT.*;
+import com.ibm.wala.shrike.shrikeBT.Compiler;
 import com.ibm.wala.shrike.shrikeBT.MethodEditor.Output;
 import com.ibm.wala.shrike.shrikeBT.MethodEditor.Patch;
+import com.ibm.wala.shrike.shrikeBT.shrikeCT.CTCompiler;
 import com.ibm.wala.shrike.shrikeBT.shrikeCT.ClassInstrumenter;
 import com.ibm.wala.shrike.shrikeBT.shrikeCT.OfflineInstrumenter;
 import com.ibm.wala.shrike.shrikeCT.ClassReader;
 import com.ibm.wala.shrike.shrikeCT.ClassWriter;
+import com.ibm.wala.shrike.shrikeCT.CodeWriter;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import com.ibm.wala.types.TypeName;
-import com.ibm.wala.types.generics.TypeSignature;
 import com.ibm.wala.util.collections.Iterator2Iterable;
-import de.uniks.vs.methodresourceprediction.slicer.export.FeatureLogger;
-import de.uniks.vs.methodresourceprediction.slicer.export.FeatureLoggerExecution;
-import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter;
+import de.uniks.vs.methodresourceprediction.slicer.export.IFeatureLoggerExecution;
 import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter.ExportFormat;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.AppendingSliceWriter;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.FeatureExecution;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.FeatureTable;
 import de.uniks.vs.methodresourceprediction.utils.InstrumenterComparator;
 import de.uniks.vs.methodresourceprediction.utils.Utilities;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 
 public class Instrumenter {
   private static final String ADDITIONAL_JARS_PATH = "extra_libs/";
@@ -42,8 +51,16 @@ public class Instrumenter {
 
   // Filter for duplicate entries.
   private final Set<String> duplicateEntrySet = new HashSet<>();
+  // Instrumented class files by the jar entry name they replace
+  private final Map<String, byte[]> instrumentedClasses = new LinkedHashMap<>();
   private final String[] exportJars =
       new String[] {"slicer.export-1.0.0-SNAPSHOT.jar", "utils-1.0.0-SNAPSHOT.jar"};
+  // Classes of the slicer called by instrumented code
+  private static final Class<?>[] RUNTIME_CLASSES =
+      new Class<?>[] {AppendingSliceWriter.class, FeatureExecution.class, FeatureTable.class};
+  // Synthetic static field holding the FeatureTable of the instrumented method
+  private static final String FEATURE_TABLE_FIELD = "$slicerFeatureTable";
+  private static final String STATIC_INITIALIZER = "<clinit>";
   private boolean integrateFeatureLogger = false;
   private boolean verbose = false;
 
@@ -116,10 +133,6 @@ public class Instrumenter {
     instrumenter = new OfflineInstrumenter();
     //		instrumenter.addInputJar(new File(inputPath));
     addJar(inputPath);
-
-    String tempOutputPath = outputPath + "_";
-    instrumenter.setOutputJar(new File(tempOutputPath));
-    instrumenter.setPassUnmodifiedClasses(true);
   }
 
   public void instrument(
@@ -130,50 +143,109 @@ public class Instrumenter {
       Map<Integer, Set<Integer>> varIndexesToRenumber,
       Set<Integer> instructionsInCycles)
       throws InvalidClassFileException, IllegalStateException, IOException {
+    // Only the class declaring the method is read, finalize() copies all other classes unmodified
+    ClassInstrumenter ci =
+        JarClassIndex.of(new File(inputPath)).getDeclaringClassInstrumenter(methodSignature);
+    if (ci == null) {
+      return;
+    }
+
+    // Search for the correct method (MethodData)
     InstrumenterComparator comparator = InstrumenterComparator.of(methodSignature);
+    ClassReader reader = ci.getReader();
+    MethodData md = null;
+    for (int methodIndex = 0; methodIndex < reader.getMethodCount(); methodIndex++) {
+      md = ci.visitMethod(methodIndex);
+      if (md == null) {
+        continue;
+      }
 
-    instrumenter.beginTraversal();
+      if (!comparator.equals(md)) {
+        md = null;
+        continue;
+      }
+      break;
+    }
 
-    // Iterate each class in the input program and instrument it
-    ClassInstrumenter ci;
-    while ((ci = instrumenter.nextClass()) != null) {
-      // Search for the correct method (MethodData)
-      ClassReader reader = ci.getReader();
-      MethodData md = null;
+    // Check if method was not found in this class
+    if (md == null) {
+      return;
+    }
 
-      for (int methodIndex = 0; methodIndex < reader.getMethodCount(); methodIndex++) {
-        md = ci.visitMethod(methodIndex);
-        if (md == null) {
-          continue;
-        }
+    InstrumentedMethod instrumentedMethod =
+        instrumentMethod(
+            md,
+            instructionIndexes,
+            instructionIndexesToKeep,
+            instructionIndexesToIgnore,
+            instructionPopMap,
+            varIndexesToRenumber,
+            instructionsInCycles);
+    instrumentedMethod.getMethodEditor().endPass();
+
+    // Write no matter if there are changes
+    ClassWriter cw = emitClass(ci, instrumentedMethod.getStaticInitializerPatch());
+    instrumentedClasses.put(ci.getInputName(), cw.makeBytes());
+  }
 
-        if (!comparator.equals(md)) {
-          md = null;
-          continue;
-        }
-        break;
-      }
+  /**
+   * Emits the instrumented class. A given patch is inserted at the start of the static initializer
+   * of the class, which is created if the class does not have one, and stores the FeatureTable in
+   * the synthetic field added to the class.
+   */
+  private ClassWriter emitClass(ClassInstrumenter ci, Patch staticInitializerPatch)
+      throws InvalidClassFileException {
+    if (staticInitializerPatch == null) {
+      return ci.emitClass();
+    }
 
-      // Check if method was not found in this class
-      if (md == null) {
-        continue;
+    ClassReader reader = ci.getReader();
+    MethodData staticInitializer = null;
+    for (int methodIndex = 0; methodIndex < reader.getMethodCount(); methodIndex++) {
+      if (STATIC_INITIALIZER.equals(reader.getMethodName(methodIndex))) {
+        staticInitializer = ci.visitMethod(methodIndex);
+        break;
       }
+    }
+    boolean createStaticInitializer = staticInitializer == null;
+    if (createStaticInitializer) {
+      staticInitializer =
+          ci.createEmptyMethodData(STATIC_INITIALIZER, "()V", Constants.ACC_STATIC);
+    }
+    MethodEditor methodEditor = new MethodEditor(staticInitializer);
+    methodEditor.beginPass();
+    methodEditor.insertAtStart(staticInitializerPatch);
+    methodEditor.applyPatches();
+    methodEditor.endPass();
+
+    ClassWriter cw = ci.emitClass();
+    if (createStaticInitializer) {
+      // The ClassInstrumenter only emits existing methods, compile the new one the same way
+      CTCompiler compiler = CTCompiler.make(cw, staticInitializer);
+      compiler.compile();
+      Compiler.Output output = compiler.getOutput();
+      CodeWriter code = new CodeWriter(cw);
+      code.setCode(output.getCode());
+      code.setMaxStack(output.getMaxStack());
+      code.setMaxLocals(output.getMaxLocals());
+      code.setRawHandlers(output.getRawHandlers());
+      cw.addMethod(
+          Constants.ACC_STATIC, STATIC_INITIALIZER, "()V", new ClassWriter.Element[] {code});
+    }
 
-      InstrumentedMethod instrumentedMethod =
-          instrumentMethod(
-              md,
-              instructionIndexes,
-              instructionIndexesToKeep,
-              instructionIndexesToIgnore,
-              instructionPopMap,
-              varIndexesToRenumber,
-              instructionsInCycles);
-      instrumentedMethod.getMethodEditor().endPass();
-
-      // Write no matter if there are changes
-      ClassWriter cw = ci.emitClass();
-      instrumenter.outputModifiedClass(ci, cw);
+    // Fields of interfaces have to be public
+    int access = Constants.ACC_STATIC | Constants.ACC_FINAL | Constants.ACC_SYNTHETIC;
+    if ((reader.getAccessFlags() & Constants.ACC_INTERFACE) != 0) {
+      access |= Constants.ACC_PUBLIC;
+    } else {
+      access |= Constants.ACC_PRIVATE;
     }
+    cw.addField(
+        access,
+        FEATURE_TABLE_FIELD,
+        Util.makeType(FeatureTable.class),
+        new ClassWriter.Element[0]);
+    return cw;
   }
 
   protected InstrumentedMethod instrumentMethod(
@@ -253,19 +325,21 @@ public class Instrumenter {
     // needs 2 elements on the stack.
     final int startTimeVarIndex = maxVarIndex += 1;
 
+    Patch staticInitializerPatch = null;
     if (integrateFeatureLogger) {
-      instrumentFeatureLogger(
-          methodData,
-          instructionIndexes,
-          instructionIndexesToKeep,
-          instructionPopMap,
-          featurePatchMap,
-          instructionsInCycles,
-          instructions,
-          lastInstructionIndex,
-          maxVarIndex,
-          instructionPatchesMap,
-          startTimeVarIndex);
+      staticInitializerPatch =
+          instrumentFeatureLogger(
+              methodData,
+              instructionIndexes,
+              instructionIndexesToKeep,
+              instructionPopMap,
+              featurePatchMap,
+              instructionsInCycles,
+              instructions,
+              lastInstructionIndex,
+              maxVarIndex,
+              instructionPatchesMap,
+              startTimeVarIndex);
     }
 
     // Apply patches from map
@@ -273,10 +347,18 @@ public class Instrumenter {
 
     methodEditor.applyPatches();
 
-    return new InstrumentedMethod(methodEditor);
+    InstrumentedMethod instrumentedMethod = new InstrumentedMethod(methodEditor);
+    instrumentedMethod.setStaticInitializerPatch(staticInitializerPatch);
+    return instrumentedMethod;
   }
 
-  private void instrumentFeatureLogger(
+  /**
+   * Adds the feature logging to the method.
+   *
+   * @return the patch initializing the FeatureTable field in the static initializer of the class
+   *     or null if the method is the static initializer itself
+   */
+  private Patch instrumentFeatureLogger(
       MethodData methodData,
       Set<Integer> instructionIndexes,
       Set<Integer> instructionIndexesToKeep,
@@ -288,8 +370,7 @@ public class Instrumenter {
       int maxVarIndex,
       Map<Integer, Map<PatchAction, List<Patch>>> instructionPatchesMap,
       int startTimeVarIndex) {
-    final int loggerVarIndex = maxVarIndex += 2;
-    final int executionLoggerVarIndex = maxVarIndex += 1;
+    final int executionLoggerVarIndex = maxVarIndex += 2;
     final int resultVarIndex = maxVarIndex += 1;
     final int endTimeVarIndex = maxVarIndex += 2;
 
@@ -299,81 +380,108 @@ public class Instrumenter {
       atStartPatches.add(Utilities.getStoreTimePatch(startTimeVarIndex));
     }
 
-    // Clear feature state in SliceWriter on method start. After the method
-    // execution, other code can use the feature information from the executed slice
-    final String loggerType = Util.makeType(FeatureLogger.class);
-    final String executionLoggerType = Util.makeType(FeatureLoggerExecution.class);
-    atStartPatches.add(
+    // Each feature gets a dense slot number, its position in the sorted instruction indexes, which
+    // is where an execution stores its value. The FeatureTable with the slots and the default
+    // values is created once in the static initializer of the class
+    final int[] sortedInstructionIndexes =
+        instructionIndexes.stream().mapToInt(Integer::intValue).sorted().toArray();
+
+    // Slots of the features with a default value. A specified patch may use parameters and
+    // locals, so its value is logged on every invocation instead of being a default of the table.
+    final List<Integer> defaultValueSlots = new ArrayList<>();
+    final List<Integer> patchedDefaultValueSlots = new ArrayList<>();
+    for (int featureSlot = 0; featureSlot < sortedInstructionIndexes.length; featureSlot++) {
+      int instructionIndex = sortedInstructionIndexes[featureSlot];
+      // TODO Handle more instruction types here
+      if (!(instructions[instructionIndex] instanceof ConstantInstruction)) {
+        continue;
+      }
+      if (featurePatchMap.containsKey(instructionIndex)) {
+        patchedDefaultValueSlots.add(featureSlot);
+      } else {
+        defaultValueSlots.add(featureSlot);
+      }
+    }
+
+    final Patch featureTablePatch =
         new Patch() {
           @Override
           public void emitTo(Output w) {
-            // Create the new FeatureLogger-Object
-            w.emit(Util.makeInvoke(FeatureLogger.class, "getInstance", new Class[] {}));
-            w.emit(StoreInstruction.make(loggerType, loggerVarIndex));
-
-            // Initialize every feature at the beginning
-            instructionIndexes.forEach(
-                instructionIndex -> {
-                  w.emit(LoadInstruction.make(loggerType, loggerVarIndex));
-                  w.emit(ConstantInstruction.make(instructionIndex));
-                  w.emit(ConstantInstruction.make(0)); // do not throw an exception
-                  w.emit(
-                      Util.makeInvoke(
-                          FeatureLogger.class,
-                          "initializeFeature",
-                          new Class[] {int.class, boolean.class}));
-
-                  // Add instruction default values
-                  // If there is a specified patch for the feature, use the patch instead of the
-                  // default value
-                  if (featurePatchMap.containsKey(instructionIndex)) {
-                    // TODO Handle more instruction types here
-                    if (instructions[instructionIndex] instanceof ConstantInstruction) {
-                      ConstantInstruction instruction =
-                          (ConstantInstruction) instructions[instructionIndex];
-                      w.emit(LoadInstruction.make(loggerType, loggerVarIndex));
-                      w.emit(ConstantInstruction.make(instructionIndex));
-                      Patch patch = featurePatchMap.get(instructionIndex);
-                      patch.emitTo(w);
-                      Utilities.convertIfNecessary(w, TypeSignature.make(instruction.getType()));
-                      w.emit(
-                          Util.makeInvoke(
-                              FeatureLogger.class,
-                              "setFeatureDefaultValue",
-                              new Class[] {int.class, Object.class}));
-                    }
-                  } else {
-                    // Handle all other instructions were no explicit patch is given
-                    // We can be sure that a not modified constant has the constant value
-                    if (instructions[instructionIndex] instanceof ConstantInstruction) {
-                      ConstantInstruction instruction =
-                          (ConstantInstruction) instructions[instructionIndex];
-                      w.emit(LoadInstruction.make(loggerType, loggerVarIndex));
-                      w.emit(ConstantInstruction.make(instructionIndex));
-                      w.emit(
-                          ConstantInstruction.make(instruction.getType(), instruction.getValue()));
-                      Utilities.convertIfNecessary(w, TypeSignature.make(instruction.getType()));
-                      w.emit(
-                          Util.makeInvoke(
-                              FeatureLogger.class,
-                              "setFeatureDefaultValue",
-                              new Class[] {int.class, Object.class}));
-                    }
-                  }
-                });
+            w.emit(ConstantInstruction.make(sortedInstructionIndexes.length));
+            w.emit(NewInstruction.make("[" + Constants.TYPE_int, 1));
+            for (int position = 0; position < sortedInstructionIndexes.length; position++) {
+              w.emit(DupInstruction.make(0));
+              w.emit(ConstantInstruction.make(position));
+              w.emit(ConstantInstruction.make(sortedInstructionIndexes[position]));
+              w.emit(ArrayStoreInstruction.make(Constants.TYPE_int));
+            }
+            w.emit(Util.makeInvoke(FeatureTable.class, "create", new Class[] {int[].class}));
+
+            // Add instruction default values
+            for (int featureSlot : defaultValueSlots) {
+              ConstantInstruction instruction =
+                  (ConstantInstruction) instructions[sortedInstructionIndexes[featureSlot]];
+              w.emit(DupInstruction.make(0));
+              w.emit(ConstantInstruction.make(featureSlot));
+              // We can be sure that a not modified constant has the constant value
+              w.emit(ConstantInstruction.make(instruction.getType(), instruction.getValue()));
+              w.emit(
+                  Util.makeInvoke(
+                      FeatureTable.class,
+                      "setDefaultValue",
+                      new Class[] {int.class, getValueClass(instruction.getType())}));
+            }
+          }
+        };
 
-            // Create an execution object
-            w.emit(LoadInstruction.make(loggerType, loggerVarIndex));
-            w.emit(Util.makeInvoke(FeatureLogger.class, "createExecution", new Class[] {}));
+    // The static initializer runs only once, it does not need the field
+    final boolean isStaticInitializer = STATIC_INITIALIZER.equals(methodData.getName());
+    final String featureTableType = Util.makeType(FeatureTable.class);
+    final String executionLoggerType = Util.makeType(FeatureExecution.class);
+    atStartPatches.add(
+        new Patch() {
+          @Override
+          public void emitTo(Output w) {
+            // Take an execution from the FeatureTable on method start
+            if (isStaticInitializer) {
+              featureTablePatch.emitTo(w);
+            } else {
+              w.emit(
+                  GetInstruction.make(
+                      featureTableType, methodData.getClassType(), FEATURE_TABLE_FIELD, true));
+            }
+            w.emit(Util.makeInvoke(FeatureTable.class, "createExecution", new Class[] {}));
             w.emit(StoreInstruction.make(executionLoggerType, executionLoggerVarIndex));
+
+            // If there is a specified patch for a feature, its value is used instead of the
+            // default value. The feature instruction overwrites it when it runs.
+            for (int featureSlot : patchedDefaultValueSlots) {
+              int instructionIndex = sortedInstructionIndexes[featureSlot];
+              ConstantInstruction instruction =
+                  (ConstantInstruction) instructions[instructionIndex];
+              w.emit(LoadInstruction.make(executionLoggerType, executionLoggerVarIndex));
+              w.emit(ConstantInstruction.make(featureSlot));
+              featurePatchMap.get(instructionIndex).emitTo(w);
+              w.emit(ConstantInstruction.make(1)); // overwrite
+              Class<?> valueClass = getValueClass(instruction.getType());
+              w.emit(
+                  Util.makeInvoke(
+                      FeatureExecution.class,
+                      "logSlot",
+                      new Class[] {int.class, valueClass, boolean.class}));
+            }
           }
         });
 
     // Patch every feature to get the value
     for (int instructionIndex : instructionIndexes) {
       IInstruction featureInstruction = instructions[instructionIndex];
+      final int featureSlot = Arrays.binarySearch(sortedInstructionIndexes, instructionIndex);
 
-      boolean allowValueOverwrite = instructionsInCycles.contains(instructionIndex);
+      // The value of a specified patch was logged on method start
+      boolean allowValueOverwrite =
+          instructionsInCycles.contains(instructionIndex)
+              || featurePatchMap.containsKey(instructionIndex);
 
       if (featureInstruction instanceof ConditionalBranchInstruction) {
         // Special handing before a conditional jump.
@@ -401,7 +509,7 @@ public class Instrumenter {
                 w.emit(ConstantInstruction.make(0));
                 Patch featureLoggerLogPatch =
                     getFeatureLoggerLogPatch(
-                        instructionIndex,
+                        featureSlot,
                         resultVarIndex,
                         instruction.getType(),
                         executionLoggerVarIndex);
@@ -440,6 +548,7 @@ public class Instrumenter {
               methodData,
               featureInstruction,
               instructionIndex,
+              featureSlot,
               resultVarIndex,
               instructionPopMap,
               executionLoggerVarIndex,
@@ -506,7 +615,7 @@ public class Instrumenter {
             getExecutionEndPatch(executionLoggerVarIndex, startTimeVarIndex, endTimeVarIndex));
 
         if (exportFormat != null) {
-          patches.add(getWriteFilePatch(loggerVarIndex));
+          patches.add(getWriteFilePatch(executionLoggerVarIndex));
         }
       }
     }
@@ -517,7 +626,7 @@ public class Instrumenter {
       patches.add(Utilities.getStoreTimePatch(endTimeVarIndex));
       patches.add(
           getExecutionEndPatch(executionLoggerVarIndex, startTimeVarIndex, endTimeVarIndex));
-      patches.add(getWriteFilePatch(loggerVarIndex));
+      patches.add(getWriteFilePatch(executionLoggerVarIndex));
     }
 
     // Add a return statement to the end of the method if there is not any
@@ -532,12 +641,26 @@ public class Instrumenter {
             }
           });
     }
+
+    if (isStaticInitializer) {
+      return null;
+    }
+    return new Patch() {
+      @Override
+      public void emitTo(Output w) {
+        featureTablePatch.emitTo(w);
+        w.emit(
+            PutInstruction.make(
+                featureTableType, methodData.getClassType(), FEATURE_TABLE_FIELD, true));
+      }
+    };
   }
 
   protected Patch getResultAfterPatch(
       MethodData methodData,
       final IInstruction instruction,
       int instructionIndex,
+      int featureSlot,
       final int resultVarIndex,
       Map<Integer, Integer> instructionPopMap,
       int executionLoggerVarIndex,
@@ -650,13 +773,15 @@ public class Instrumenter {
               // Increment the last value by 1
               w.emit(
                   LoadInstruction.make(
-                      Util.makeType(FeatureLoggerExecution.class), executionLoggerVarIndex));
-              w.emit(ConstantInstruction.make(instructionIndex));
+                      Util.makeType(FeatureExecution.class), executionLoggerVarIndex));
+              w.emit(ConstantInstruction.make(featureSlot));
               w.emit(ConstantInstruction.make(1));
-              Utilities.convertIfNecessary(w, TypeSignature.make(Constants.TYPE_int));
+              w.emit(ConstantInstruction.make(0)); // do not overwrite
               w.emit(
                   Util.makeInvoke(
-                      FeatureLoggerExecution.class, "log", new Class[] {int.class, Object.class}));
+                      FeatureExecution.class,
+                      "logSlot",
+                      new Class[] {int.class, int.class, boolean.class}));
             }
             return;
           } else {
@@ -672,7 +797,7 @@ public class Instrumenter {
 
         // Log the value on the stack in local variable "resultVarIndex"
         getFeatureLoggerLogPatch(
-                instructionIndex,
+                featureSlot,
                 resultVarIndex,
                 type,
                 executionLoggerVarIndex,
@@ -683,13 +808,13 @@ public class Instrumenter {
   }
 
   protected Patch getFeatureLoggerLogPatch(
-      int instructionIndex, final int resultVarIndex, String type, int executionLoggerVarIndex) {
+      int featureSlot, final int resultVarIndex, String type, int executionLoggerVarIndex) {
     return getFeatureLoggerLogPatch(
-        instructionIndex, resultVarIndex, type, executionLoggerVarIndex, false);
+        featureSlot, resultVarIndex, type, executionLoggerVarIndex, false);
   }
 
   protected Patch getFeatureLoggerLogPatch(
-      int instructionIndex,
+      int featureSlot,
       final int resultVarIndex,
       String type,
       int executionLoggerVarIndex,
@@ -708,34 +833,47 @@ public class Instrumenter {
         // again later
         w.emit(StoreInstruction.make(type2, resultVarIndex));
 
-        // featureLogger.log(instructionIndex, value)
+        // execution.logSlot(featureSlot, value, allowValueOverwrite) with the method of the
+        // value type, so primitive values are not boxed
         w.emit(
-            LoadInstruction.make(
-                Util.makeType(FeatureLoggerExecution.class), executionLoggerVarIndex));
+            LoadInstruction.make(Util.makeType(FeatureExecution.class), executionLoggerVarIndex));
 
         // Export the feature value and time (prepare the parameters first)
-        w.emit(ConstantInstruction.make(instructionIndex));
+        w.emit(ConstantInstruction.make(featureSlot));
         w.emit(LoadInstruction.make(type2, resultVarIndex));
-        Utilities.convertIfNecessary(w, TypeSignature.make(type2));
-
-        if (allowValueOverwrite) {
-          w.emit(ConstantInstruction.make(1));
-          w.emit(
-              Util.makeInvoke(
-                  FeatureLoggerExecution.class,
-                  "log",
-                  new Class[] {int.class, Object.class, boolean.class}));
-        } else {
-          w.emit(
-              Util.makeInvoke(
-                  FeatureLoggerExecution.class, "log", new Class[] {int.class, Object.class}));
-        }
+        w.emit(ConstantInstruction.make(allowValueOverwrite ? 1 : 0));
+        w.emit(
+            Util.makeInvoke(
+                FeatureExecution.class,
+                "logSlot",
+                new Class[] {int.class, getValueClass(type), boolean.class}));
 
         w.emit(LoadInstruction.make(type2, resultVarIndex));
       }
     };
   }
 
+  // Parameter type of the FeatureExecution method taking a value of the given bytecode type
+  private static Class<?> getValueClass(String type) {
+    switch (type) {
+      case Constants.TYPE_boolean:
+        return boolean.class;
+      case Constants.TYPE_byte:
+      case Constants.TYPE_char:
+      case Constants.TYPE_short:
+      case Constants.TYPE_int:
+        return int.class;
+      case Constants.TYPE_long:
+        return long.class;
+      case Constants.TYPE_float:
+        return float.class;
+      case Constants.TYPE_double:
+        return double.class;
+      default:
+        return Object.class;
+    }
+  }
+
   private static void applyPatches(
       MethodEditor methodEditor,
       Set<Integer> instructionIndexesToKeep,
@@ -856,40 +994,39 @@ public class Instrumenter {
       @Override
       public void emitTo(Output w) {
         w.emit(
-            LoadInstruction.make(
-                Util.makeType(FeatureLoggerExecution.class), executionLoggerVarIndex));
+            LoadInstruction.make(Util.makeType(FeatureExecution.class), executionLoggerVarIndex));
         w.emit(LoadInstruction.make(Constants.TYPE_long, startTimeVarIndex));
         w.emit(LoadInstruction.make(Constants.TYPE_long, endTimeVarIndex));
         w.emit(
-            Util.makeInvoke(
-                FeatureLoggerExecution.class, "end", new Class[] {long.class, long.class}));
+            Util.makeInvoke(FeatureExecution.class, "end", new Class[] {long.class, long.class}));
       }
     };
   }
 
-  protected Patch getWriteFilePatch(int loggerVarIndex) {
+  protected Patch getWriteFilePatch(int executionLoggerVarIndex) {
     return new Patch() {
       @Override
       public void emitTo(Output w) {
-        // FeatureValueWriter.writeCSV(path)
-        w.emit(ConstantInstruction.makeString(resultFilePath));
-        w.emit(LoadInstruction.make(Util.makeType(FeatureLogger.class), loggerVarIndex));
+        // AppendingSliceWriter.appendCSV(path, execution) appends only the finished execution
+        String methodName;
         switch (exportFormat) {
           case CSV:
-            w.emit(
-                Util.makeInvoke(
-                    SliceWriter.class,
-                    "writeCSV",
-                    new Class[] {String.class, FeatureLogger.class}));
+            methodName = "appendCSV";
             break;
           case XML:
-            w.emit(
-                Util.makeInvoke(
-                    SliceWriter.class,
-                    "writeXML",
-                    new Class[] {String.class, FeatureLogger.class}));
+            methodName = "appendXML";
             break;
+          default:
+            return;
         }
+        w.emit(ConstantInstruction.makeString(resultFilePath));
+        w.emit(
+            LoadInstruction.make(Util.makeType(FeatureExecution.class), executionLoggerVarIndex));
+        w.emit(
+            Util.makeInvoke(
+                AppendingSliceWriter.class,
+                methodName,
+                new Class[] {String.class, IFeatureLoggerExecution.class}));
       }
     };
   }
@@ -917,7 +1054,8 @@ public class Instrumenter {
 
   /**
    * Finalizes the instrumentalization. This consists out of adding additional required libraries
-   * and classes
+   * and classes. The output jar is written in a single pass, all entries except the manifest and
+   * the instrumented classes are copied without recompressing them.
    *
    * @throws DecoderException
    */
@@ -948,16 +1086,73 @@ public class Instrumenter {
       jars.add(exportJarPath);
     }
 
-    for (String jar : jars) {
-      addJar(jar);
+    instrumenter.close();
+
+    try (StreamingJarWriter writer = new StreamingJarWriter(new File(outputPath))) {
+      // The manifest has to be the first entry for readers of the jar as a stream
+      Manifest manifest = getCorrectedManifest();
+      if (manifest != null) {
+        ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+        manifest.write(manifestBytes);
+        writer.putEntry(JarFile.MANIFEST_NAME, manifestBytes.toByteArray());
+      }
+      for (Entry<String, byte[]> instrumentedClass : instrumentedClasses.entrySet()) {
+        writer.putEntry(instrumentedClass.getKey(), instrumentedClass.getValue());
+      }
+      if (integrateFeatureLogger) {
+        for (Class<?> runtimeClass : RUNTIME_CLASSES) {
+          String entryName = runtimeClass.getName().replace('.', '/') + ".class";
+          try (InputStream input = runtimeClass.getResourceAsStream("/" + entryName)) {
+            if (input == null) {
+              throw new IOException("Class file of " + runtimeClass.getName() + " not found");
+            }
+            writer.putEntry(entryName, IOUtils.toByteArray(input));
+          }
+        }
+      }
+
+      // Entries already written are skipped, other META-INF/ files (e.g. signatures) are invalid
+      // after instrumentation
+      writer.copyEntries(new File(inputPath), entryName -> !entryName.startsWith("META-INF/"));
+      for (String jar : jars) {
+        writer.copyEntries(new File(jar), entryName -> !entryName.startsWith("META-INF/"));
+      }
     }
+  }
 
-    instrumenter.close();
+  /**
+   * Reads the manifest of the input jar and corrects it due to instrumentation: sets the main class
+   * and updates the digests of the instrumented classes. All other entries are copied unchanged, so
+   * their digests stay valid.
+   *
+   * @return the corrected manifest or null if the input jar has none
+   */
+  private Manifest getCorrectedManifest() throws IOException {
+    Manifest manifest;
+    try (JarFile jarFile = new JarFile(inputPath)) {
+      manifest = jarFile.getManifest();
+    }
+    if (manifest == null) {
+      return null;
+    }
 
-    // Correct the META-INF/ files due to instrumentation
-    String tempOutputPath = instrumenter.getOutputFile().getPath();
-    Utilities.correctJarManifests(tempOutputPath, outputPath, mainClass);
-    new File(tempOutputPath).delete();
+    if (mainClass != null && !mainClass.isEmpty()) {
+      manifest.getMainAttributes().putValue("Main-Class", mainClass);
+    }
+    for (Entry<String, byte[]> instrumentedClass : instrumentedClasses.entrySet()) {
+      Attributes attributes = manifest.getAttributes(instrumentedClass.getKey());
+      String digest = attributes != null ? attributes.getValue("SHA1-Digest") : null;
+      if (digest == null) {
+        continue;
+      }
+      String newDigest =
+          Base64.getEncoder().encodeToString(DigestUtils.sha1(instrumentedClass.getValue()));
+      if (!digest.equals(newDigest)) {
+        System.out.println(instrumentedClass.getKey() + ": " + digest + " => " + newDigest);
+      }
+      attributes.putValue("SHA1-Digest", newDigest);
+    }
+    return manifest;
   }
 
   protected void addJar(String jarPath) throws IOException {
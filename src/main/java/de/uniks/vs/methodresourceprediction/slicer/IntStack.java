@@ -0,0 +1,137 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Stack;
+import java.util.function.IntConsumer;
+
+// Immutable stack of primitive ints. Pushing and popping return a new stack sharing all elements
+// below the top with the original one, so a snapshot of a simulated operand stack is free.
+public final class IntStack {
+  private static final IntStack EMPTY = new IntStack(0, null, 0);
+
+  private final int top;
+  private final IntStack below;
+  private final int size;
+
+  private IntStack(int top, IntStack below, int size) {
+    this.top = top;
+    this.below = below;
+    this.size = size;
+  }
+
+  public static IntStack empty() {
+    return EMPTY;
+  }
+
+  /** Creates a stack from the given elements, the first element being the bottom one. */
+  public static IntStack of(int... elements) {
+    IntStack stack = EMPTY;
+    for (int element : elements) {
+      stack = stack.push(element);
+    }
+    return stack;
+  }
+
+  /** Creates a stack holding the element {@code count} times. */
+  public static IntStack repeat(int element, int count) {
+    IntStack stack = EMPTY;
+    for (int iteration = 0; iteration < count; iteration++) {
+      stack = stack.push(element);
+    }
+    return stack;
+  }
+
+  public IntStack push(int element) {
+    return new IntStack(element, this, size + 1);
+  }
+
+  /** Returns the stack without the top element. */
+  public IntStack pop() {
+    if (size == 0) {
+      throw new EmptyStackException();
+    }
+    return below;
+  }
+
+  public int peek() {
+    if (size == 0) {
+      throw new EmptyStackException();
+    }
+    return top;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns the element at the position counted from the bottom of the stack (like Stack). */
+  public int get(int position) {
+    if (position < 0 || position >= size) {
+      throw new ArrayIndexOutOfBoundsException(position);
+    }
+    IntStack stack = this;
+    for (int steps = size - 1 - position; steps > 0; steps--) {
+      stack = stack.below;
+    }
+    return stack.top;
+  }
+
+  /** Returns the elements from the bottom to the top of the stack. */
+  public int[] toArray() {
+    int[] elements = new int[size];
+    IntStack stack = this;
+    for (int position = size - 1; position >= 0; position--) {
+      elements[position] = stack.top;
+      stack = stack.below;
+    }
+    return elements;
+  }
+
+  /** Calls the consumer for all elements from the bottom to the top of the stack. */
+  public void forEach(IntConsumer consumer) {
+    for (int element : toArray()) {
+      consumer.accept(element);
+    }
+  }
+
+  public Stack<Integer> toStack() {
+    Stack<Integer> stack = new Stack<>();
+    forEach(stack::push);
+    return stack;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IntStack)) {
+      return false;
+    }
+    IntStack other = (IntStack) o;
+    if (size != other.size) {
+      return false;
+    }
+    for (IntStack a = this, b = other; a != b; a = a.below, b = b.below) {
+      if (a.top != b.top) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(toArray());
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
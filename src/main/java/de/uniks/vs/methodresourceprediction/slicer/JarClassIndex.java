@@ -0,0 +1,395 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import com.ibm.wala.shrike.shrikeBT.MethodData;
+import com.ibm.wala.shrike.shrikeBT.shrikeCT.ClassInstrumenter;
+import com.ibm.wala.shrike.shrikeCT.ClassReader;
+import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.utils.InstrumenterComparator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Class file repository of a jar shared by all analyses. The jar is memory-mapped and the internal
+// class names (e.g. "java/lang/Object") are indexed once from its central directory, so looking up
+// a method inflates and parses only the class file declaring it instead of traversing every class
+// of the jar. Parsed classes are kept in a bounded LRU cache. Classes stored below a directory
+// prefix (e.g. "BOOT-INF/classes/") are looked up by their file name, which parses only the entries
+// with that name. If the entry of a name declares another class, the lookup falls back to an index
+// of the declared names, which requires reading every class once. Only the indexes of the
+// most recently used jars are kept, the mapping of an evicted jar is released once it is no longer
+// referenced. The jar must not be modified while it is being read.
+public class JarClassIndex {
+  private static final String CLASS_FILE_SUFFIX = ".class";
+  private static final int CLASS_READER_CACHE_SIZE = 256;
+  private static final int INDEX_CACHE_SIZE = 8;
+  private static final Map<String, JarClassIndex> INDEXES =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarClassIndex> eldest) {
+          return size() > INDEX_CACHE_SIZE;
+        }
+      };
+
+  // Zip format constants (see the .ZIP File Format Specification)
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_LENGTH = 0xffff;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final File jar;
+  private final long lastModified;
+  private final long length;
+  private final MappedByteBuffer buffer;
+  private final Map<String, JarClassEntry> classEntries;
+  private Map<String, List<JarClassEntry>> classEntriesByFileName;
+  private Map<String, JarClassEntry> declaredClassEntries;
+
+  private final Map<String, ClassReader> classReaderCache =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClassReader> eldest) {
+          return size() > CLASS_READER_CACHE_SIZE;
+        }
+      };
+
+  private JarClassIndex(File jar) throws IOException {
+    this.jar = jar;
+    this.lastModified = jar.lastModified();
+    this.length = jar.length();
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Jars larger than 2 GB are not supported: " + jar);
+    }
+
+    try (FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    classEntries = readCentralDirectory();
+  }
+
+  /** Returns the index of the jar. It is rebuilt if the jar has changed since it was indexed. */
+  public static JarClassIndex of(File jar) throws IOException {
+    String key = jar.getCanonicalPath();
+    synchronized (INDEXES) {
+      JarClassIndex index = INDEXES.get(key);
+      if (index != null && index.isUpToDate()) {
+        return index;
+      }
+    }
+
+    // Map the jar outside of the lock, a jar indexed twice concurrently does no harm
+    JarClassIndex index = new JarClassIndex(jar);
+    synchronized (INDEXES) {
+      INDEXES.put(key, index);
+    }
+    return index;
+  }
+
+  /**
+   * Returns an iterator over the classes of the jar in the order of their jar entries. Each class
+   * is read when the iterator reaches it and bypasses the cache, so a traversal neither keeps the
+   * classes of the jar in memory nor evicts the cached ones.
+   */
+  public ClassIterator getClassIterator() {
+    return new ClassIterator();
+  }
+
+  /**
+   * Reads the class with the internal name (e.g. "java/lang/Object").
+   *
+   * @return the instrumenter for the class or null if the jar does not contain the class
+   */
+  public ClassInstrumenter getClassInstrumenter(String className)
+      throws IOException, InvalidClassFileException {
+    JarClassEntry entry = classEntries.get(className);
+    if (entry == null) {
+      entry = getPrefixedClassEntry(className);
+    } else if (!getClassReader(entry).getName().equals(className)) {
+      entry = getDeclaredClassEntries().get(className);
+    }
+    if (entry == null) {
+      return null;
+    }
+    // Instrumenters are mutable (e.g. the visited methods), only the class reader is shared
+    return new ClassInstrumenter(entry.name, getClassReader(entry), null);
+  }
+
+  /**
+   * Reads the method with the signature, e.g. "Lpackage.Class;.method(I)V".
+   *
+   * @return the method or null if the jar does not contain the method
+   */
+  public MethodData getMethodData(String methodSignature)
+      throws IOException, InvalidClassFileException {
+    InstrumenterComparator comparator = InstrumenterComparator.of(methodSignature);
+    ClassInstrumenter classInstrumenter = getClassInstrumenter(getClassName(comparator));
+    if (classInstrumenter == null) {
+      return null;
+    }
+    int methodCount = classInstrumenter.getReader().getMethodCount();
+    for (int methodIndex = 0; methodIndex < methodCount; methodIndex++) {
+      MethodData methodData = classInstrumenter.visitMethod(methodIndex);
+      if (methodData != null && comparator.equals(methodData)) {
+        return methodData;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the class declaring the method with the signature, e.g. "Lpackage.Class;.method(I)V".
+   *
+   * @return the instrumenter for the class or null if the jar does not contain the class
+   */
+  public ClassInstrumenter getDeclaringClassInstrumenter(String methodSignature)
+      throws IOException, InvalidClassFileException {
+    return getClassInstrumenter(getClassName(InstrumenterComparator.of(methodSignature)));
+  }
+
+  /**
+   * Returns the bytes of the class file declaring the method with the signature.
+   *
+   * @return the class file bytes or null if the jar does not contain the class
+   */
+  public byte[] getDeclaringClassBytes(String methodSignature)
+      throws IOException, InvalidClassFileException {
+    ClassInstrumenter classInstrumenter = getDeclaringClassInstrumenter(methodSignature);
+    if (classInstrumenter == null) {
+      return null;
+    }
+    return classInstrumenter.getReader().getBytes();
+  }
+
+  public File getJar() {
+    return jar;
+  }
+
+  private static String getClassName(InstrumenterComparator comparator) {
+    // The class type name is "Lpackage/Class" (without the trailing semicolon)
+    return comparator.getClassTypeName().toString().substring(1);
+  }
+
+  private ClassReader getClassReader(JarClassEntry entry)
+      throws IOException, InvalidClassFileException {
+    synchronized (classReaderCache) {
+      ClassReader classReader = classReaderCache.get(entry.name);
+      if (classReader != null) {
+        return classReader;
+      }
+    }
+
+    // Inflate and parse outside of the lock, a class parsed twice concurrently does no harm
+    ClassReader classReader = new ClassReader(readEntry(entry));
+    synchronized (classReaderCache) {
+      classReaderCache.put(entry.name, classReader);
+    }
+    return classReader;
+  }
+
+  private byte[] readEntry(JarClassEntry entry) throws IOException {
+    if (entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE > length
+        || buffer.getInt(entry.localHeaderOffset) != LOCAL_FILE_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local file header of \"" + entry.name + "\" in " + jar);
+    }
+    // The sizes are taken from the central directory, the local ones may be in a data descriptor
+    int nameLength = Short.toUnsignedInt(buffer.getShort(entry.localHeaderOffset + 26));
+    int extraLength = Short.toUnsignedInt(buffer.getShort(entry.localHeaderOffset + 28));
+    int dataOffset = entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength;
+    if ((long) dataOffset + entry.compressedSize > length) {
+      throw new IOException("Truncated entry \"" + entry.name + "\" in " + jar);
+    }
+    // Absolute reads above are thread-safe, relative reads need a buffer of their own
+    ByteBuffer data = buffer.duplicate();
+    data.position(dataOffset).limit(dataOffset + entry.compressedSize);
+
+    byte[] bytes = new byte[entry.size];
+    if (entry.method == STORED) {
+      data.get(bytes);
+      return bytes;
+    }
+
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(data);
+      int inflated = 0;
+      while (inflated < bytes.length && !inflater.finished()) {
+        int count = inflater.inflate(bytes, inflated, bytes.length - inflated);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != bytes.length) {
+        throw new IOException("Truncated entry \"" + entry.name + "\" in " + jar);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid compressed entry \"" + entry.name + "\" in " + jar, e);
+    } finally {
+      inflater.end();
+    }
+    return bytes;
+  }
+
+  private Map<String, JarClassEntry> readCentralDirectory() throws IOException {
+    // The end of central directory record is followed by a comment of variable length
+    int endOffset = -1;
+    int highestOffset = (int) length - END_OF_CENTRAL_DIRECTORY_SIZE;
+    int lowestOffset = Math.max(0, highestOffset - MAX_COMMENT_LENGTH);
+    for (int offset = highestOffset; offset >= lowestOffset; offset--) {
+      if (buffer.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        endOffset = offset;
+        break;
+      }
+    }
+    if (endOffset == -1) {
+      throw new IOException("No end of central directory found in " + jar);
+    }
+
+    int entryCount = Short.toUnsignedInt(buffer.getShort(endOffset + 10));
+    long directoryOffset = Integer.toUnsignedLong(buffer.getInt(endOffset + 16));
+    if (entryCount == 0xffff || directoryOffset == 0xffffffffL) {
+      throw new IOException("Zip64 jars are not supported: " + jar);
+    }
+
+    Map<String, JarClassEntry> entries = new LinkedHashMap<>();
+    int offset = (int) directoryOffset;
+    for (int entryIndex = 0; entryIndex < entryCount; entryIndex++) {
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > endOffset
+          || buffer.getInt(offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+        throw new IOException("Invalid central directory in " + jar);
+      }
+      int method = Short.toUnsignedInt(buffer.getShort(offset + 10));
+      long compressedSize = Integer.toUnsignedLong(buffer.getInt(offset + 20));
+      long size = Integer.toUnsignedLong(buffer.getInt(offset + 24));
+      int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 28));
+      int extraLength = Short.toUnsignedInt(buffer.getShort(offset + 30));
+      int commentLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+      long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(offset + 42));
+
+      byte[] nameBytes = new byte[nameLength];
+      buffer.duplicate().position(offset + CENTRAL_DIRECTORY_HEADER_SIZE).get(nameBytes);
+      String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+      offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+      if (!entryName.endsWith(CLASS_FILE_SUFFIX)) {
+        continue;
+      }
+      if (method != STORED && method != DEFLATED) {
+        throw new IOException("Unsupported compression of \"" + entryName + "\" in " + jar);
+      }
+      if (compressedSize > length || size > Integer.MAX_VALUE || localHeaderOffset > length) {
+        throw new IOException("Invalid entry \"" + entryName + "\" in " + jar);
+      }
+
+      String className = entryName.substring(0, entryName.length() - CLASS_FILE_SUFFIX.length());
+      // Keep the first entry of a class like a traversal of the jar would find it first
+      entries.putIfAbsent(
+          className,
+          new JarClassEntry(
+              entryName, method, (int) compressedSize, (int) size, (int) localHeaderOffset));
+    }
+    return entries;
+  }
+
+  // Entry of the class stored below a directory prefix or null if there is none
+  private JarClassEntry getPrefixedClassEntry(String className)
+      throws IOException, InvalidClassFileException {
+    String entryNameSuffix = "/" + className + CLASS_FILE_SUFFIX;
+    List<JarClassEntry> entries = getClassEntriesByFileName().get(getFileName(entryNameSuffix));
+    if (entries == null) {
+      return null;
+    }
+    for (JarClassEntry entry : entries) {
+      if (entry.name.endsWith(entryNameSuffix)
+          && getClassReader(entry).getName().equals(className)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private synchronized Map<String, List<JarClassEntry>> getClassEntriesByFileName() {
+    if (classEntriesByFileName != null) {
+      return classEntriesByFileName;
+    }
+
+    Map<String, List<JarClassEntry>> entries = new HashMap<>();
+    for (JarClassEntry entry : classEntries.values()) {
+      entries.computeIfAbsent(getFileName(entry.name), fileName -> new ArrayList<>()).add(entry);
+    }
+    classEntriesByFileName = entries;
+    return classEntriesByFileName;
+  }
+
+  private static String getFileName(String entryName) {
+    return entryName.substring(entryName.lastIndexOf('/') + 1);
+  }
+
+  private synchronized Map<String, JarClassEntry> getDeclaredClassEntries()
+      throws IOException, InvalidClassFileException {
+    if (declaredClassEntries != null) {
+      return declaredClassEntries;
+    }
+
+    Map<String, JarClassEntry> entries = new HashMap<>();
+    for (JarClassEntry entry : classEntries.values()) {
+      entries.putIfAbsent(new ClassReader(readEntry(entry)).getName(), entry);
+    }
+    declaredClassEntries = entries;
+    return declaredClassEntries;
+  }
+
+  private boolean isUpToDate() {
+    return jar.lastModified() == lastModified && jar.length() == length;
+  }
+
+  /** Reads the classes of the jar one at a time like {@code OfflineInstrumenter.nextClass()}. */
+  public class ClassIterator {
+    private final Iterator<JarClassEntry> entries = classEntries.values().iterator();
+
+    private ClassIterator() {}
+
+    /** @return the instrumenter for the next class or null if all classes have been read */
+    public ClassInstrumenter nextClass() throws IOException, InvalidClassFileException {
+      if (!entries.hasNext()) {
+        return null;
+      }
+      JarClassEntry entry = entries.next();
+      return new ClassInstrumenter(entry.name, new ClassReader(readEntry(entry)), null);
+    }
+  }
+
+  private static class JarClassEntry {
+    private final String name;
+    private final int method;
+    private final int compressedSize;
+    private final int size;
+    private final int localHeaderOffset;
+
+    JarClassEntry(String name, int method, int compressedSize, int size, int localHeaderOffset) {
+      this.name = name;
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import com.ibm.wala.shrike.shrikeBT.IGetInstruction;
+import com.ibm.wala.shrike.shrikeBT.IInstruction;
+import com.ibm.wala.shrike.shrikeBT.ILoadInstruction;
+import com.ibm.wala.shrike.shrikeBT.IPutInstruction;
+import com.ibm.wala.shrike.shrikeBT.IStoreInstruction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+// Forward bit-vector dataflow over the basic blocks of a control flow graph. Definitions are
+// local variable stores and field puts. A definition reaches an instruction if there is a path
+// from the definition to the instruction. Later definitions of the same variable or field do not
+// kill it, so the kill sets are empty and the result equals the "any preceding store on some
+// execution path" rule of DataDependency.
+public class ReachingDefinitions {
+  private final Graph<Integer, DefaultEdge> cfg;
+  private final IInstruction[] instructions;
+
+  // Basic blocks: block id per instruction, position inside the block and block contents
+  private int[] instructionToBlock;
+  private int[] positionInBlock;
+  private int[][] blocks;
+
+  // Definition numbering and definitions grouped by the variable/field they define
+  private int[] definitionIds;
+  private int[] definitionInstructions;
+  private Map<Object, BitSet> definitionsByKey;
+
+  private BitSet[] blockIn;
+
+  public ReachingDefinitions(Graph<Integer, DefaultEdge> cfg, IInstruction[] instructions) {
+    this.cfg = cfg;
+    this.instructions = instructions;
+
+    computeBlocks();
+    computeDefinitions();
+    computeBlockIn();
+  }
+
+  private void computeBlocks() {
+    final int instructionCount = instructions.length;
+
+    // An instruction starts a new block unless it has a single predecessor which
+    // itself has a single successor
+    boolean[] leaders = new boolean[instructionCount];
+    for (int index = 0; index < instructionCount; index++) {
+      if (cfg.inDegreeOf(index) != 1) {
+        leaders[index] = true;
+        continue;
+      }
+      DefaultEdge edge = cfg.incomingEdgesOf(index).iterator().next();
+      leaders[index] = cfg.outDegreeOf(cfg.getEdgeSource(edge)) != 1;
+    }
+
+    instructionToBlock = new int[instructionCount];
+    positionInBlock = new int[instructionCount];
+    Arrays.fill(instructionToBlock, -1);
+    List<int[]> blockList = new ArrayList<>();
+    int[] block = new int[instructionCount];
+    for (int pass = 0; pass < 2; pass++) {
+      for (int leader = 0; leader < instructionCount; leader++) {
+        // The second pass picks up cycles without any leader (dead code only)
+        if (instructionToBlock[leader] != -1 || (pass == 0 && !leaders[leader])) {
+          continue;
+        }
+        int blockSize = 0;
+        int index = leader;
+        while (true) {
+          instructionToBlock[index] = blockList.size();
+          positionInBlock[index] = blockSize;
+          block[blockSize++] = index;
+          if (cfg.outDegreeOf(index) != 1) {
+            break;
+          }
+          int next = cfg.getEdgeTarget(cfg.outgoingEdgesOf(index).iterator().next());
+          if (leaders[next] || instructionToBlock[next] != -1) {
+            break;
+          }
+          index = next;
+        }
+        blockList.add(Arrays.copyOf(block, blockSize));
+      }
+    }
+    blocks = blockList.toArray(new int[0][]);
+  }
+
+  private void computeDefinitions() {
+    definitionIds = new int[instructions.length];
+    Arrays.fill(definitionIds, -1);
+    definitionInstructions = new int[instructions.length];
+    definitionsByKey = new HashMap<>();
+
+    int definitionCount = 0;
+    for (int index = 0; index < instructions.length; index++) {
+      Object key = getDefinitionKey(instructions[index]);
+      if (key == null) {
+        continue;
+      }
+      definitionIds[index] = definitionCount;
+      definitionInstructions[definitionCount] = index;
+      definitionsByKey.computeIfAbsent(key, k -> new BitSet()).set(definitionCount);
+      definitionCount++;
+    }
+  }
+
+  private void computeBlockIn() {
+    final int blockCount = blocks.length;
+
+    BitSet[] gen = new BitSet[blockCount];
+    int[][] successors = new int[blockCount][];
+    for (int blockId = 0; blockId < blockCount; blockId++) {
+      gen[blockId] = new BitSet();
+      for (int index : blocks[blockId]) {
+        if (definitionIds[index] != -1) {
+          gen[blockId].set(definitionIds[index]);
+        }
+      }
+
+      int last = blocks[blockId][blocks[blockId].length - 1];
+      Set<Integer> successorBlocks = new LinkedHashSet<>();
+      for (DefaultEdge edge : cfg.outgoingEdgesOf(last)) {
+        successorBlocks.add(instructionToBlock[cfg.getEdgeTarget(edge)]);
+      }
+      successors[blockId] = successorBlocks.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // out = in | gen (no kills), in = union of the predecessors outs
+    blockIn = new BitSet[blockCount];
+    BitSet[] blockOut = new BitSet[blockCount];
+    Deque<Integer> worklist = new ArrayDeque<>();
+    boolean[] queued = new boolean[blockCount];
+    for (int blockId = 0; blockId < blockCount; blockId++) {
+      blockIn[blockId] = new BitSet();
+      blockOut[blockId] = (BitSet) gen[blockId].clone();
+      worklist.add(blockId);
+      queued[blockId] = true;
+    }
+    while (!worklist.isEmpty()) {
+      int blockId = worklist.poll();
+      queued[blockId] = false;
+      for (int successor : successors[blockId]) {
+        BitSet successorIn = blockIn[successor];
+        int cardinality = successorIn.cardinality();
+        successorIn.or(blockOut[blockId]);
+        if (successorIn.cardinality() == cardinality) {
+          continue;
+        }
+        blockOut[successor].or(successorIn);
+        if (!queued[successor]) {
+          worklist.add(successor);
+          queued[successor] = true;
+        }
+      }
+    }
+  }
+
+  private static Object getDefinitionKey(IInstruction instruction) {
+    if (instruction instanceof IStoreInstruction) {
+      return ((IStoreInstruction) instruction).getVarIndex();
+    }
+    if (instruction instanceof IPutInstruction) {
+      IPutInstruction putInstruction = (IPutInstruction) instruction;
+      return List.of(putInstruction.getClassType(), putInstruction.getFieldName());
+    }
+    return null;
+  }
+
+  private static Object getUseKey(IInstruction instruction) {
+    if (instruction instanceof ILoadInstruction) {
+      return ((ILoadInstruction) instruction).getVarIndex();
+    }
+    if (instruction instanceof IGetInstruction) {
+      IGetInstruction getInstruction = (IGetInstruction) instruction;
+      return List.of(getInstruction.getClassType(), getInstruction.getFieldName());
+    }
+    return null;
+  }
+
+  /**
+   * Returns the indexes of the stores (for loads) or puts (for gets) of the same variable or field
+   * reaching the given instruction. Other instructions do not use any definition.
+   */
+  public Set<Integer> getUsedDefinitions(int instructionIndex) {
+    Set<Integer> usedDefinitions = new LinkedHashSet<>();
+    Object key = getUseKey(instructions[instructionIndex]);
+    BitSet definitions = key != null ? definitionsByKey.get(key) : null;
+    if (definitions == null) {
+      return usedDefinitions;
+    }
+
+    // Definitions reaching the block plus the ones preceding the instruction inside it
+    int blockId = instructionToBlock[instructionIndex];
+    BitSet reaching = (BitSet) blockIn[blockId].clone();
+    int[] block = blocks[blockId];
+    for (int position = 0; position < positionInBlock[instructionIndex]; position++) {
+      if (definitionIds[block[position]] != -1) {
+        reaching.set(definitionIds[block[position]]);
+      }
+    }
+    reaching.and(definitions);
+
+    for (int definition = reaching.nextSetBit(0);
+        definition >= 0;
+        definition = reaching.nextSetBit(definition + 1)) {
+      usedDefinitions.add(definitionInstructions[definition]);
+    }
+    return usedDefinitions;
+  }
+}
@@ -0,0 +1,407 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import com.ibm.wala.shrike.shrikeBT.ConstantInstruction;
+import com.ibm.wala.shrike.shrikeBT.GotoInstruction;
+import com.ibm.wala.shrike.shrikeBT.IInstruction;
+import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.loop.Loop;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+// Combines all dependency graphs into the instructions an instruction depends on for slicing. The
+// dependencies of an instruction are collected into a primitive array on first use. A slice is the
+// set of instructions reachable from the slicing criterion over these dependencies. Dependencies
+// restored from an AnalysisCache are used as they are, the graphs are only built for the
+// instructions whose dependencies were not computed before.
+public class SliceDependencies {
+  private final ControlFlow controlFlow;
+  private final ControlDependency controlDependency;
+  private final BlockDependency blockDependency;
+  private final ArgumentDependency argumentDependency;
+  private final DataDependency dataDependency;
+  private final InitializerDependency initializerDependency;
+  private final ConditionalDependency conditionalDependency;
+
+  private final IInstruction[] instructions;
+  private final int[][] dependencies;
+  private BitSet parameterDependentIndexes;
+  // Whether anything was computed in addition to the restored dependencies
+  private boolean computed;
+
+  // Slice table: strongly connected component of every instruction and the slice shared by all
+  // instructions of a component
+  private int[] instructionComponents;
+  private BitSet[] componentSlices;
+
+  public SliceDependencies(
+      ControlFlow controlFlow,
+      ControlDependency controlDependency,
+      BlockDependency blockDependency,
+      ArgumentDependency argumentDependency,
+      DataDependency dataDependency,
+      InitializerDependency initializerDependency,
+      ConditionalDependency conditionalDependency)
+      throws IOException, InvalidClassFileException {
+    this(
+        controlFlow,
+        controlDependency,
+        blockDependency,
+        argumentDependency,
+        dataDependency,
+        initializerDependency,
+        conditionalDependency,
+        null,
+        null);
+  }
+
+  /**
+   * Continues with the dependencies computed before (see {@link #getComputedDependencies()} and
+   * {@link #getComputedParameterDependentIndexes()}). Instructions without dependencies (null
+   * entries) and missing parameter dependent indexes (null) are computed from the graphs.
+   */
+  public SliceDependencies(
+      ControlFlow controlFlow,
+      ControlDependency controlDependency,
+      BlockDependency blockDependency,
+      ArgumentDependency argumentDependency,
+      DataDependency dataDependency,
+      InitializerDependency initializerDependency,
+      ConditionalDependency conditionalDependency,
+      int[][] dependencies,
+      BitSet parameterDependentIndexes)
+      throws IOException, InvalidClassFileException {
+    this.controlFlow = controlFlow;
+    this.controlDependency = controlDependency;
+    this.blockDependency = blockDependency;
+    this.argumentDependency = argumentDependency;
+    this.dataDependency = dataDependency;
+    this.initializerDependency = initializerDependency;
+    this.conditionalDependency = conditionalDependency;
+
+    this.instructions = controlFlow.getMethodData().getInstructions();
+    if (dependencies == null) {
+      this.dependencies = new int[instructions.length][];
+    } else if (dependencies.length == instructions.length) {
+      this.dependencies = dependencies.clone();
+    } else {
+      throw new IllegalArgumentException(
+          "Dependencies of "
+              + dependencies.length
+              + " instructions given for "
+              + instructions.length
+              + " instructions");
+    }
+    if (parameterDependentIndexes != null) {
+      this.parameterDependentIndexes = (BitSet) parameterDependentIndexes.clone();
+    }
+  }
+
+  /**
+   * Adds the instruction and all instructions it (transitively) depends on to the slice.
+   * Instructions already contained in the slice are not followed again.
+   */
+  public void slice(BitSet slice, int index) throws IOException, InvalidClassFileException {
+    if (index < 0 || slice.get(index)) {
+      // We cannot slice indexes which represent optional "this" (-1) or method
+      // arguments (-2, -3, ...)
+      return;
+    }
+
+    int[] worklist = new int[16];
+    int worklistSize = 0;
+    slice.set(index);
+    worklist[worklistSize++] = index;
+    while (worklistSize > 0) {
+      int current = worklist[--worklistSize];
+      for (int dependency : getDependencies(current)) {
+        if (slice.get(dependency)) {
+          continue;
+        }
+        slice.set(dependency);
+        if (worklistSize == worklist.length) {
+          worklist = Arrays.copyOf(worklist, worklistSize * 2);
+        }
+        worklist[worklistSize++] = dependency;
+      }
+    }
+  }
+
+  /** Returns the instruction indexes the instruction directly depends on (no "this"/arguments). */
+  public int[] getDependencies(int index) throws IOException, InvalidClassFileException {
+    if (dependencies[index] != null) {
+      return dependencies[index];
+    }
+
+    dependencies[index] = computeDependencies(index);
+    computed = true;
+    return dependencies[index];
+  }
+
+  /**
+   * Returns the dependencies known so far, indexed by instruction index. Instructions whose
+   * dependencies have neither been restored nor computed yet are null.
+   */
+  public int[][] getComputedDependencies() {
+    return dependencies.clone();
+  }
+
+  /** Returns the instructions depending on a method parameter or null if not known yet. */
+  public BitSet getComputedParameterDependentIndexes() {
+    return parameterDependentIndexes;
+  }
+
+  /** Returns whether anything was computed in addition to the restored dependencies. */
+  public boolean hasComputedDependencies() {
+    return computed;
+  }
+
+  /** Returns whether the instruction depends on a method parameter. */
+  public boolean hasDependencyToMethodParameter(int index)
+      throws IOException, InvalidClassFileException {
+    return getParameterDependentIndexes().get(index);
+  }
+
+  /** Returns the instructions depending on a method parameter. */
+  public BitSet getParameterDependentIndexes() throws IOException, InvalidClassFileException {
+    if (parameterDependentIndexes != null) {
+      return parameterDependentIndexes;
+    }
+
+    BitSet indexes = new BitSet(instructions.length);
+    for (int index = 0; index < instructions.length; index++) {
+      if (dataDependency.hasDependencyToMethodParameter(index)) {
+        indexes.set(index);
+      }
+    }
+    parameterDependentIndexes = indexes;
+    computed = true;
+    return parameterDependentIndexes;
+  }
+
+  /**
+   * Returns the slice of the instruction, i.e. the instruction and all instructions it
+   * (transitively) depends on. The first call computes the slices of all instructions at once.
+   */
+  public BitSet getSlice(int index) throws IOException, InvalidClassFileException {
+    computeSliceTable();
+    return (BitSet) componentSlices[instructionComponents[index]].clone();
+  }
+
+  /** Returns the slices of all instructions, indexed by instruction index. */
+  public BitSet[] getSliceTable() throws IOException, InvalidClassFileException {
+    computeSliceTable();
+    BitSet[] sliceTable = new BitSet[instructions.length];
+    for (int index = 0; index < instructions.length; index++) {
+      sliceTable[index] = (BitSet) componentSlices[instructionComponents[index]].clone();
+    }
+    return sliceTable;
+  }
+
+  // Condenses the dependencies into strongly connected components (all instructions of a
+  // component have the same slice) using an iterative version of Tarjan's algorithm. Tarjan
+  // completes a component only after all components reachable from it, so the slice of a
+  // component is its instructions plus the already known slices of its successors.
+  private void computeSliceTable() throws IOException, InvalidClassFileException {
+    if (componentSlices != null) {
+      return;
+    }
+
+    final int instructionCount = instructions.length;
+    int[] order = new int[instructionCount];
+    int[] lowLinks = new int[instructionCount];
+    Arrays.fill(order, -1);
+    boolean[] onStack = new boolean[instructionCount];
+    int[] componentStack = new int[instructionCount];
+    int componentStackSize = 0;
+    int[] callStack = new int[instructionCount];
+    int[] callStackPositions = new int[instructionCount];
+    int callStackSize = 0;
+
+    int[] components = new int[instructionCount];
+    List<BitSet> slices = new ArrayList<>();
+    int nextOrder = 0;
+    for (int root = 0; root < instructionCount; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      order[root] = lowLinks[root] = nextOrder++;
+      componentStack[componentStackSize++] = root;
+      onStack[root] = true;
+      callStack[callStackSize] = root;
+      callStackPositions[callStackSize++] = 0;
+
+      while (callStackSize > 0) {
+        int node = callStack[callStackSize - 1];
+        int[] nodeDependencies = getDependencies(node);
+        int position = callStackPositions[callStackSize - 1];
+        if (position < nodeDependencies.length) {
+          callStackPositions[callStackSize - 1]++;
+          int dependency = nodeDependencies[position];
+          if (order[dependency] == -1) {
+            order[dependency] = lowLinks[dependency] = nextOrder++;
+            componentStack[componentStackSize++] = dependency;
+            onStack[dependency] = true;
+            callStack[callStackSize] = dependency;
+            callStackPositions[callStackSize++] = 0;
+          } else if (onStack[dependency]) {
+            lowLinks[node] = Math.min(lowLinks[node], order[dependency]);
+          }
+          continue;
+        }
+
+        callStackSize--;
+        if (callStackSize > 0) {
+          int caller = callStack[callStackSize - 1];
+          lowLinks[caller] = Math.min(lowLinks[caller], lowLinks[node]);
+        }
+        if (lowLinks[node] != order[node]) {
+          continue;
+        }
+
+        // Pop the component and join the slices of the components it depends on
+        int component = slices.size();
+        BitSet slice = new BitSet(instructionCount);
+        int componentStart = componentStackSize;
+        do {
+          componentStart--;
+          components[componentStack[componentStart]] = component;
+          onStack[componentStack[componentStart]] = false;
+          slice.set(componentStack[componentStart]);
+        } while (componentStack[componentStart] != node);
+        for (int member = componentStart; member < componentStackSize; member++) {
+          for (int dependency : getDependencies(componentStack[member])) {
+            if (components[dependency] != component) {
+              slice.or(slices.get(components[dependency]));
+            }
+          }
+        }
+        componentStackSize = componentStart;
+        slices.add(slice);
+      }
+    }
+
+    instructionComponents = components;
+    componentSlices = slices.toArray(new BitSet[0]);
+  }
+
+  public ControlFlow getControlFlow() {
+    return controlFlow;
+  }
+
+  private int[] computeDependencies(int index) throws IOException, InvalidClassFileException {
+    IntList dependencies = new IntList();
+
+    // Add dependent argument instructions
+    for (Integer argumentIndex : argumentDependency.getArgumentInstructionIndexes(index)) {
+      dependencies.add(argumentIndex);
+    }
+
+    // Add cycle dependencies (goto)
+    // If our current instruction is a ConstantInstruction, it cannot be affected by
+    // any loop iteration count. This is the only exception for loops here.
+    if (!(instructions[index] instanceof ConstantInstruction)) {
+      Graph<Integer, DefaultEdge> cfg = controlFlow.getGraph();
+      for (Loop loop : controlFlow.getLoopNestingForest().getLoopsForInstruction(index)) {
+        // NOTE: Slicing a loop is a bit tricky. Usually, the start and the end of the
+        // loop must be kept in order to preserve its functionality. Explicitly, keeping
+        // the start of a loop can result in keeping instruction which are part of the
+        // loop but expected to be sliced out. Therefore, we assume that the java
+        // compiler always generates foot-controlled (is that the correct term?) loops,
+        // meaning, that the condition for a loop iteration is realized at the highest
+        // instruction index of the whole loop. Hope this will last for future java
+        // releases.
+
+        // TODO Usually a loop is compiled by jumping to the end (except for do-while)
+        // for the evaluation of the condition. If the condition is not met, it jumps
+        // back (in the control flow) to the start of the loop.
+        int cycleStartIndex = loop.getLowestIndex();
+        if (cycleStartIndex > 0 && instructions[cycleStartIndex - 1] instanceof GotoInstruction) {
+          GotoInstruction gotoInstruction = (GotoInstruction) instructions[cycleStartIndex - 1];
+          // The jump target must definitively in between the loop begin and end.
+          if (!controlFlow.inSameCycle(gotoInstruction.getLabel(), cycleStartIndex)) {
+            // Coming here means there is a Goto-Instruction directly in front of the loop,
+            // but the jump target is somewhere outside the loop. I cannot image any case
+            // where this is possible.
+            continue;
+          }
+          dependencies.add(cycleStartIndex - 1);
+        }
+
+        // So, keep end blocks of loop (every instruction jumping back to the start)
+        // NOTE: This is usually a GOTO- or ConditionalBranch-Instruction. Is it
+        // required to slice the index?
+        for (DefaultEdge edge : cfg.incomingEdgesOf(cycleStartIndex)) {
+          int cycleEndIndex = cfg.getEdgeSource(edge);
+          if (!loop.contains(cycleEndIndex)) {
+            continue;
+          }
+          dependencies.add(blockDependency.getBlockForIndex(cycleEndIndex).getHighestIndex());
+        }
+      }
+    }
+
+    // Consider conditional dependencies
+    for (Integer conditionalDependentIndex :
+        conditionalDependency.getConditionalDependencyInstructions(index)) {
+      if (instructions[conditionalDependentIndex] instanceof GotoInstruction) {
+        dependencies.add(conditionalDependentIndex);
+      }
+    }
+
+    // Consider data dependencies
+    for (Integer dataDependentIndex : dataDependency.getDataDependencyInstructions(index)) {
+      // If the data dependency is higher and NOT part of the same loop (if any)
+      // => ignore it
+      if (dataDependentIndex > index && !controlFlow.inSameCycle(index, dataDependentIndex)) {
+        continue;
+      }
+      dependencies.add(dataDependentIndex);
+    }
+
+    // TODO Why do we not need to consider control dependencies? Implied by the
+    // argument dependencies?
+    // Consider control dependencies
+    // Constant-Instructions are independent of any control dependency
+    if (!(instructions[index] instanceof ConstantInstruction)) {
+      for (Integer controlDependentIndex :
+          controlDependency.getControlDependencyInstructions(index)) {
+        if (controlDependentIndex == ControlDependency.ROOT_INDEX) {
+          continue;
+        }
+        dependencies.add(controlDependentIndex);
+      }
+    }
+
+    // Class Object Dependencies
+    for (Integer initializerDependentIndex :
+        initializerDependency.getClassInitializerDependencyInstructions(index)) {
+      dependencies.add(initializerDependentIndex);
+    }
+    return dependencies.toArray();
+  }
+
+  private static class IntList {
+    private int[] elements = new int[8];
+    private int size;
+
+    void add(int element) {
+      // Indexes of "this" (-1) and method arguments (-2, -3, ...) cannot be sliced
+      if (element < 0) {
+        return;
+      }
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements, size * 2);
+      }
+      elements[size++] = element;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(elements, size);
+    }
+  }
+}
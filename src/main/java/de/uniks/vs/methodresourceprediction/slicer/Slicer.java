@@ -1,7 +1,10 @@
 package de.uniks.vs.methodresourceprediction.slicer;
 
 import com.ibm.wala.shrike.shrikeBT.*;
+import com.ibm.wala.shrike.shrikeBT.shrikeCT.ClassInstrumenter;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.AnalysisCache.CachedSlice;
+import de.uniks.vs.methodresourceprediction.slicer.AnalysisCache.MethodDependencies;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.*;
 import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter.ExportFormat;
 import de.uniks.vs.methodresourceprediction.utils.Utilities;
@@ -12,12 +15,19 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.io.ExportException;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class Slicer {
+  private static final String INCREMENTAL_RESULTS_SUFFIX = ".incremental";
+
   private String inputJar;
   private String outputJar;
   private String methodSignature;
@@ -27,6 +37,11 @@ public class Slicer {
   private ExportFormat exportFormat;
   private String additionalJarsPath;
   private boolean showPlots;
+  private boolean allMethods;
+  private boolean incremental;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  // Methods which could not be sliced by makeSliceResultsFile
+  private final Map<String, Exception> sliceFailures = new LinkedHashMap<>();
 
   // Internal graphs
   private ControlFlow controlFlow;
@@ -36,6 +51,13 @@ public class Slicer {
   private ArgumentDependency argumentDependency;
   private InitializerDependency initializerDependency;
   private ConditionalDependency conditionalDependency;
+  private SliceDependencies sliceDependencies;
+  private BitSet baseIndexesToKeep;
+  private boolean baseIndexesToKeepCached;
+
+  // On-disk cache of the slicing data (optional)
+  private AnalysisCache analysisCache;
+  private String analysisCacheKey;
 
   // Dominance
   private Dominance dominance;
@@ -59,20 +81,19 @@ public class Slicer {
     mySlicer.setVerbose(true);
     mySlicer.parseArgs(args);
     //		mySlicer.setExportFormat(null);
-    mySlicer.makeSlicedFile();
+    if (mySlicer.isAllMethods()) {
+      mySlicer.makeSliceResultsFile();
+      if (!mySlicer.getSliceFailures().isEmpty()) {
+        System.exit(1);
+      }
+    } else {
+      mySlicer.makeSlicedFile();
+    }
   }
 
   public String makeSlicedFile()
       throws IOException, InvalidClassFileException, IllegalStateException, DecoderException,
           InterruptedException, ExportException {
-    ControlFlow controlFlow = getControlFlow();
-    ControlDependency controlDependency = getControlDependency();
-    BlockDependency blockDependency = getBlockDependency();
-    DataDependency dataDependency = getDataDependency();
-    ArgumentDependency argumentDependency = getArgumentDependency();
-    InitializerDependency initializerDependency = getInitializerDependency();
-    ConditionalDependency conditionalDependency = getConditionalDependency();
-
     //    Dominance dominance = getDominance();
     //    StrictDominance strictDominance = getStrictDominance();
     //    ImmediateDominance immediateDominance = getImmediateDominance();
@@ -81,32 +102,16 @@ public class Slicer {
     //    StrictPostDominance strictPostDominance = getStrictPostDominance();
     //    ImmediatePostDominance immediatePostDominance = getImmediatePostDominance();
 
-    Map<Integer, Set<Integer>> varIndexesToRenumber = argumentDependency.getVarIndexesToRenumber();
-    Set<Integer> instructionsInCycles = controlFlow.getInstructionsInCycles();
+    Map<Integer, Set<Integer>> varIndexesToRenumber =
+        getArgumentDependency().getVarIndexesToRenumber();
+    Set<Integer> instructionsInCycles = getControlFlow().getInstructionsInCycles();
 
     if (showPlots) {
       showPlots();
     }
 
-    Set<Integer> instructionIndexesToKeep =
-        getInstructionIndexesToKeep(
-            controlFlow,
-            controlDependency,
-            blockDependency,
-            argumentDependency,
-            dataDependency,
-            initializerDependency,
-            conditionalDependency);
-    Set<Integer> instructionIndexesToIgnore =
-        getInstructionIndexesToIgnore(
-            controlFlow,
-            controlDependency,
-            blockDependency,
-            argumentDependency,
-            dataDependency,
-            initializerDependency,
-            conditionalDependency);
-    Map<Integer, Integer> instructionPopMap = getInstructionPopMap();
+    // Computes the slice once (or reads it from the analysis cache)
+    SliceResult sliceResult = getSliceResult();
 
     //		System.out.println(getSliceResult());
 
@@ -123,9 +128,9 @@ public class Slicer {
     instrumenter.setVerbose(verbose);
     instrumenter.instrument(
         instructionIndexes,
-        instructionIndexesToKeep,
-        instructionIndexesToIgnore,
-        instructionPopMap,
+        sliceResult.getInstructionsToKeep(),
+        sliceResult.getInstructionsToIgnore(),
+        sliceResult.getInstructionPopMap(),
         varIndexesToRenumber,
         instructionsInCycles);
     instrumenter.finalize();
@@ -163,14 +168,12 @@ public class Slicer {
 
   public Set<Integer> getInstructionIndexesToIgnore()
       throws IOException, InvalidClassFileException {
+    CachedSlice slice = readCachedSlice();
+    if (slice != null) {
+      return slice.getInstructionsToIgnore();
+    }
     return getInstructionIndexesToIgnore(
-        getControlFlow(),
-        getControlDependency(),
-        getBlockDependency(),
-        getArgumentDependency(),
-        getDataDependency(),
-        getInitializerDependency(),
-        getConditionalDependency());
+        getControlFlow().getMethodData().getInstructions(), getInstructionIndexesToKeep());
   }
 
   public Set<Integer> getInstructionIndexesToIgnore(
@@ -191,9 +194,13 @@ public class Slicer {
             dataDependency,
             initializerDependency,
             conditionalDependency);
-    Set<Integer> instructionIndexesToIgnore = new HashSet<>();
+    return getInstructionIndexesToIgnore(
+        controlFlow.getMethodData().getInstructions(), instructionIndexesToKeep);
+  }
 
-    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
+  private static Set<Integer> getInstructionIndexesToIgnore(
+      IInstruction[] instructions, Set<Integer> instructionIndexesToKeep) {
+    Set<Integer> instructionIndexesToIgnore = new HashSet<>();
     for (int instructionIndex : instructionIndexesToKeep) {
       IInstruction iInstruction = instructions[instructionIndex];
       if (iInstruction instanceof IConditionalBranchInstruction) {
@@ -216,14 +223,12 @@ public class Slicer {
   }
 
   public Set<Integer> getInstructionIndexesToKeep() throws IOException, InvalidClassFileException {
+    CachedSlice slice = readCachedSlice();
+    if (slice != null) {
+      return slice.getInstructionsToKeep();
+    }
     return getInstructionIndexesToKeep(
-        getControlFlow(),
-        getControlDependency(),
-        getBlockDependency(),
-        getArgumentDependency(),
-        getDataDependency(),
-        getInitializerDependency(),
-        getConditionalDependency());
+        getSliceDependencies(), getBaseIndexesToKeep(), getInstructionIndexes());
   }
 
   public Set<Integer> getInstructionIndexesToKeep(
@@ -235,80 +240,77 @@ public class Slicer {
       InitializerDependency initializerDependency,
       ConditionalDependency conditionalDependency)
       throws IOException, InvalidClassFileException {
-    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
-    Set<Integer> indexesToKeep = new HashSet<>();
-
-    // Keep the return values
-    for (int index = 0; index < instructions.length; index++) {
-      IInstruction instruction = instructions[index];
-      if (instruction instanceof ReturnInstruction || instruction instanceof ThrowInstruction) {
-        slice(
+    SliceDependencies sliceDependencies =
+        new SliceDependencies(
             controlFlow,
             controlDependency,
             blockDependency,
             argumentDependency,
             dataDependency,
             initializerDependency,
-            conditionalDependency,
-            indexesToKeep,
-            index);
+            conditionalDependency);
+    return getInstructionIndexesToKeep(
+        sliceDependencies,
+        getBaseIndexesToKeep(sliceDependencies, blockDependency),
+        getInstructionIndexes());
+  }
+
+  // Instructions which are kept independently of the slicing criterion
+  private static BitSet getBaseIndexesToKeep(
+      SliceDependencies sliceDependencies, BlockDependency blockDependency)
+      throws IOException, InvalidClassFileException {
+    IInstruction[] instructions =
+        sliceDependencies.getControlFlow().getMethodData().getInstructions();
+    BitSet indexesToKeep = new BitSet(instructions.length);
+
+    // Keep the return values
+    for (int index = 0; index < instructions.length; index++) {
+      IInstruction instruction = instructions[index];
+      if (instruction instanceof ReturnInstruction || instruction instanceof ThrowInstruction) {
+        sliceDependencies.slice(indexesToKeep, index);
       }
     }
 
     // Keep parent constructor call
-    Block firstBlock = getBlockDependency().getBlockForIndex(0);
+    Block firstBlock = blockDependency.getBlockForIndex(0);
     if (instructions[firstBlock.getLowestIndex()] instanceof LoadInstruction) {
       if (instructions[firstBlock.getHighestIndex()] instanceof InvokeInstruction) {
         InvokeInstruction invokeInstruction =
             (InvokeInstruction) instructions[firstBlock.getHighestIndex()];
         if ("<init>".contentEquals(invokeInstruction.getMethodName())) {
-          slice(
-              controlFlow,
-              controlDependency,
-              blockDependency,
-              argumentDependency,
-              dataDependency,
-              initializerDependency,
-              conditionalDependency,
-              indexesToKeep,
-              firstBlock.getHighestIndex());
+          sliceDependencies.slice(indexesToKeep, firstBlock.getHighestIndex());
         }
       }
     }
 
+    return indexesToKeep;
+  }
+
+  private Set<Integer> getInstructionIndexesToKeep(
+      SliceDependencies sliceDependencies,
+      BitSet baseIndexesToKeep,
+      Set<Integer> instructionIndexes)
+      throws IOException, InvalidClassFileException {
+    ControlFlow controlFlow = sliceDependencies.getControlFlow();
+    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
+    BitSet indexesToKeep = (BitSet) baseIndexesToKeep.clone();
+
     // Add all provided indexes to the slice
-    for (int instructionIndex : getInstructionIndexes()) {
-      slice(
-          controlFlow,
-          controlDependency,
-          blockDependency,
-          argumentDependency,
-          dataDependency,
-          initializerDependency,
-          conditionalDependency,
-          indexesToKeep,
-          instructionIndex);
+    for (int instructionIndex : instructionIndexes) {
+      sliceDependencies.slice(indexesToKeep, instructionIndex);
     }
 
     // Check if the slice will depend on the parameters (can be affected by
     // recursive invocations)
     boolean dependentOnParameters = false;
-    for (int indexToKeep : indexesToKeep) {
-      dependentOnParameters |= dataDependency.hasDependencyToMethodParameter(indexToKeep);
+    for (int indexToKeep = indexesToKeep.nextSetBit(0);
+        indexToKeep >= 0;
+        indexToKeep = indexesToKeep.nextSetBit(indexToKeep + 1)) {
+      dependentOnParameters |= sliceDependencies.hasDependencyToMethodParameter(indexToKeep);
     }
 
     // Search for recursive invoke instructions
-    Set<Integer> recursiveInvokeInstructions = new HashSet<>();
-    for (int instructionIndex = 0; instructionIndex < instructions.length; instructionIndex++) {
-      IInstruction iInstruction = instructions[instructionIndex];
-      if (iInstruction instanceof IInvokeInstruction) {
-        IInvokeInstruction instruction = (IInvokeInstruction) iInstruction;
-        if (Utilities.isRecursiveInvokeInstruction(controlFlow.getMethodData(), instruction)) {
-          recursiveInvokeInstructions.add(instructionIndex);
-          break;
-        }
-      }
-    }
+    Set<Integer> recursiveInvokeInstructions = getRecursiveInvokeInstructions(controlFlow);
 
     // TODO still necessary?
     //    // If there are recursive invoke instructions, add them to the instruction index
@@ -355,9 +357,8 @@ public class Slicer {
     //      }
     //    }
 
-    // Concurrent modification handling since we iterate through indexesToKeep while
-    // changing inside slice(...)
-    Set<Integer> indexesToKeep2 = new HashSet<>();
+    // Slice the recursive invoke instructions separately and merge them afterwards
+    BitSet indexesToKeep2 = new BitSet(instructions.length);
     // Check if there is a data dependency to method parameters. If there is
     // further a recursive method call, include it into slicing
     if (dependentOnParameters) {
@@ -366,24 +367,78 @@ public class Slicer {
         //				if (!indexesToKeep.contains(recursiveInvokeInstructionIndex)) {
         //					continue;
         //				}
-        slice(
-            controlFlow,
-            controlDependency,
-            blockDependency,
-            argumentDependency,
-            dataDependency,
-            initializerDependency,
-            conditionalDependency,
-            indexesToKeep2,
-            recursiveInvokeInstructionIndex);
+        sliceDependencies.slice(indexesToKeep2, recursiveInvokeInstructionIndex);
       }
     }
-    indexesToKeep.addAll(indexesToKeep2);
-    return indexesToKeep;
+    indexesToKeep.or(indexesToKeep2);
+
+    Set<Integer> instructionIndexesToKeep = new HashSet<>();
+    indexesToKeep.stream().forEach(instructionIndexesToKeep::add);
+    return instructionIndexesToKeep;
+  }
+
+  private static Set<Integer> getRecursiveInvokeInstructions(ControlFlow controlFlow)
+      throws IOException, InvalidClassFileException {
+    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
+    Set<Integer> recursiveInvokeInstructions = new HashSet<>();
+    for (int instructionIndex = 0; instructionIndex < instructions.length; instructionIndex++) {
+      IInstruction iInstruction = instructions[instructionIndex];
+      if (iInstruction instanceof IInvokeInstruction) {
+        IInvokeInstruction instruction = (IInvokeInstruction) iInstruction;
+        if (Utilities.isRecursiveInvokeInstruction(controlFlow.getMethodData(), instruction)) {
+          recursiveInvokeInstructions.add(instructionIndex);
+          break;
+        }
+      }
+    }
+    return recursiveInvokeInstructions;
+  }
+
+  /**
+   * Returns the instruction indexes to keep for every single instruction as slicing criterion,
+   * indexed by instruction index. Instead of slicing every instruction on its own, the slices of
+   * all instructions are computed in one pass over the condensed dependencies.
+   */
+  public BitSet[] getInstructionIndexesToKeepTable()
+      throws IOException, InvalidClassFileException {
+    SliceDependencies sliceDependencies = getSliceDependencies();
+    ControlFlow controlFlow = sliceDependencies.getControlFlow();
+    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
+
+    BitSet[] sliceTable = sliceDependencies.getSliceTable();
+    BitSet baseIndexesToKeep = getBaseIndexesToKeep();
+
+    // A slice depending on the method parameters additionally keeps the recursive invocations
+    BitSet parameterDependentIndexes = sliceDependencies.getParameterDependentIndexes();
+    BitSet recursiveInvokeIndexesToKeep = new BitSet(instructions.length);
+    for (int recursiveInvokeInstructionIndex : getRecursiveInvokeInstructions(controlFlow)) {
+      recursiveInvokeIndexesToKeep.or(sliceTable[recursiveInvokeInstructionIndex]);
+    }
+
+    BitSet[] indexesToKeepTable = new BitSet[instructions.length];
+    for (int instructionIndex = 0; instructionIndex < instructions.length; instructionIndex++) {
+      BitSet indexesToKeep = (BitSet) baseIndexesToKeep.clone();
+      indexesToKeep.or(sliceTable[instructionIndex]);
+      if (indexesToKeep.intersects(parameterDependentIndexes)) {
+        indexesToKeep.or(recursiveInvokeIndexesToKeep);
+      }
+      indexesToKeepTable[instructionIndex] = indexesToKeep;
+    }
+    writeDependencies();
+    return indexesToKeepTable;
   }
 
   public Map<Integer, Integer> getInstructionPopMap()
       throws IOException, InvalidClassFileException {
+    CachedSlice slice = readCachedSlice();
+    if (slice != null) {
+      return slice.getInstructionPopMap();
+    }
+    return getInstructionPopMap(getInstructionIndexesToKeep());
+  }
+
+  private Map<Integer, Integer> getInstructionPopMap(Set<Integer> instructionIndexesToKeep)
+      throws IOException, InvalidClassFileException {
     // Some instructions will leave an element on the stack without being processed
     // by others (because they are removed for the slice). For example:
     // _____ 5: BinaryOp(I,mul)
@@ -401,7 +456,6 @@ public class Slicer {
     // Like that, we can archive a consistent stack size slice
 
     final DefaultDirectedGraph<Integer, DefaultEdge> cfg = getControlFlow().getGraph();
-    final Set<Integer> instructionIndexesToKeep = getInstructionIndexesToKeep();
     final IInstruction[] instructions = getControlFlow().getMethodData().getInstructions();
     final ExceptionHandler[][] exceptionHandlers = getControlFlow().getMethodData().getHandlers();
     Map<Integer, Set<String>> instructionExceptions =
@@ -431,11 +485,10 @@ public class Slicer {
       StackTrace stackTrace =
           new StackTrace(blockInstructionMap, exceptionHandlers, blockCfg, blockStartIndex);
 
-      List<Stack<Integer>> stackAtInstructionIndex =
-          stackTrace.getStackAtInstructionIndex(endIndex);
-      for (Stack<Integer> stack : stackAtInstructionIndex) {
+      List<IntStack> stackAtInstructionIndex = stackTrace.getStacks(endIndex);
+      for (IntStack stack : stackAtInstructionIndex) {
         int popSize = 0;
-        for (Integer stackIndex : stack) {
+        for (int stackIndex : stack.toArray()) {
           popSize += Utilities.getPushedSize(blockInstructionMap.get(stackIndex));
         }
         if (popSize > 0) {
@@ -462,177 +515,6 @@ public class Slicer {
     return instructionPopAfterMap;
   }
 
-  private void slice(
-      ControlFlow controlFlow,
-      ControlDependency controlDependency,
-      BlockDependency blockDependency,
-      ArgumentDependency argumentDependency,
-      DataDependency dataDependency,
-      InitializerDependency initializerDependency,
-      ConditionalDependency conditionalDependency,
-      Set<Integer> dependentInstructions,
-      int index)
-      throws IOException, InvalidClassFileException {
-    if (index < 0) {
-      // We cannot slice indexes which represent optional "this" (-1) or method
-      // arguments (-2, -3, ...)
-      return;
-    }
-
-    boolean addedAny = dependentInstructions.add(index);
-    if (!addedAny) {
-      return;
-    }
-    IInstruction[] instructions = controlFlow.getMethodData().getInstructions();
-
-    // Add dependent argument instructions
-    for (Integer argumentIndex : argumentDependency.getArgumentInstructionIndexes(index)) {
-      slice(
-          controlFlow,
-          controlDependency,
-          blockDependency,
-          argumentDependency,
-          dataDependency,
-          initializerDependency,
-          conditionalDependency,
-          dependentInstructions,
-          argumentIndex);
-    }
-
-    // Add cycle dependencies (goto)
-    // If our current instruction is a ConstantInstruction, it cannot be affected by
-    // any loop iteration count. This is the only exception for loops here.
-    if (!(instructions[index] instanceof ConstantInstruction)) {
-      List<List<Integer>> cycles = controlFlow.getCyclesForInstruction(index);
-      for (List<Integer> cycle : cycles) {
-        // NOTE: Slicing a loop is a bit tricky. Usually, the start and the end of the
-        // loop must be kept in order to preserve its functionality. Explicitly, keeping
-        // the start of a loop can result in keeping instruction which are part of the
-        // loop but expected to be sliced out. Therefore, we assume that the java
-        // compiler always generates foot-controlled (is that the correct term?) loops,
-        // meaning, that the condition for a loop iteration is realized at the highest
-        // instruction index of the whole loop. Hope this will last for future java
-        // releases.
-
-        // TODO Usually a loop is compiled by jumping to the end (except for do-while)
-        // for the evaluation of the condition. If the condition is not met, it jumps
-        // back (in the control flow) to the start of the loop.
-        Integer cycleStartIndex = cycle.get(0);
-        if (cycleStartIndex > 0 && instructions[cycleStartIndex - 1] instanceof GotoInstruction) {
-          GotoInstruction gotoInstruction = (GotoInstruction) instructions[cycleStartIndex - 1];
-          // The jump target must definitively in between the loop begin and end.
-          if (!controlFlow.inSameCycle(gotoInstruction.getLabel(), cycleStartIndex)) {
-            // Coming here means there is a Goto-Instruction directly in front of the loop,
-            // but the jump target is somewhere outside the loop. I cannot image any case
-            // where this is possible.
-            continue;
-          }
-          slice(
-              controlFlow,
-              controlDependency,
-              blockDependency,
-              argumentDependency,
-              dataDependency,
-              initializerDependency,
-              conditionalDependency,
-              dependentInstructions,
-              cycleStartIndex - 1);
-        }
-
-        // So, keep end block of loop
-        // NOTE: This is usually a GOTO- or ConditionalBranch-Instruction. Is it
-        // required to slice the index?
-        Integer cycleEndIndex = cycle.get(cycle.size() - 1);
-        Integer highestIndex = blockDependency.getBlockForIndex(cycleEndIndex).getHighestIndex();
-        slice(
-            controlFlow,
-            controlDependency,
-            blockDependency,
-            argumentDependency,
-            dataDependency,
-            initializerDependency,
-            conditionalDependency,
-            dependentInstructions,
-            highestIndex);
-      }
-    }
-
-    // Consider conditional dependencies
-    for (Integer conditionalDependentIndex :
-        conditionalDependency.getConditionalDependencyInstructions(index)) {
-      if (instructions[conditionalDependentIndex] instanceof GotoInstruction) {
-        slice(
-            controlFlow,
-            controlDependency,
-            blockDependency,
-            argumentDependency,
-            dataDependency,
-            initializerDependency,
-            conditionalDependency,
-            dependentInstructions,
-            conditionalDependentIndex);
-      }
-    }
-
-    // Consider data dependencies
-    for (Integer dataDependentIndex : dataDependency.getDataDependencyInstructions(index)) {
-      // If the data dependency is higher and NOT part of the same loop (if any)
-      // => ignore it
-      if (dataDependentIndex > index && !controlFlow.inSameCycle(index, dataDependentIndex)) {
-        continue;
-      }
-      slice(
-          controlFlow,
-          controlDependency,
-          blockDependency,
-          argumentDependency,
-          dataDependency,
-          initializerDependency,
-          conditionalDependency,
-          dependentInstructions,
-          dataDependentIndex);
-    }
-
-    // TODO Why do we not need to consider control dependencies? Implied by the
-    // argument dependencies?
-    // Consider control dependencies
-    for (Integer controlDependentIndex :
-        controlDependency.getControlDependencyInstructions(index)) {
-      if (controlDependentIndex == ControlDependency.ROOT_INDEX) {
-        continue;
-      }
-      if ((controlFlow.getMethodData().getInstructions()[index] instanceof ConstantInstruction)) {
-        // Constant-Instructions are independent of any control dependency
-        continue;
-      }
-      slice(
-          controlFlow,
-          controlDependency,
-          blockDependency,
-          argumentDependency,
-          dataDependency,
-          initializerDependency,
-          conditionalDependency,
-          dependentInstructions,
-          controlDependentIndex);
-    }
-
-    // Class Object Dependencies
-    for (Integer initializerDependentIndex :
-        initializerDependency.getClassInitializerDependencyInstructions(index)) {
-      slice(
-          controlFlow,
-          controlDependency,
-          blockDependency,
-          argumentDependency,
-          dataDependency,
-          initializerDependency,
-          conditionalDependency,
-          dependentInstructions,
-          initializerDependentIndex);
-    }
-  }
-
   public ControlFlow getControlFlow() throws IOException, InvalidClassFileException {
     if (controlFlow != null) {
       return controlFlow;
@@ -691,6 +573,95 @@ public class Slicer {
     return conditionalDependency;
   }
 
+  public SliceDependencies getSliceDependencies() throws IOException, InvalidClassFileException {
+    if (sliceDependencies != null) {
+      return sliceDependencies;
+    }
+
+    // Continue with the dependencies cached by earlier analyses of the method, the graphs are
+    // built lazily and only for instructions whose dependencies are missing
+    String cacheKey = getAnalysisCacheKey();
+    MethodDependencies methodDependencies =
+        cacheKey != null ? analysisCache.readDependencies(cacheKey) : null;
+    if (methodDependencies != null
+        && methodDependencies.getDependencies().length
+            != getControlFlow().getMethodData().getInstructions().length) {
+      // A corrupted entry, treated like a missing one
+      methodDependencies = null;
+    }
+    sliceDependencies =
+        new SliceDependencies(
+            getControlFlow(),
+            getControlDependency(),
+            getBlockDependency(),
+            getArgumentDependency(),
+            getDataDependency(),
+            getInitializerDependency(),
+            getConditionalDependency(),
+            methodDependencies != null ? methodDependencies.getDependencies() : null,
+            methodDependencies != null ? methodDependencies.getParameterDependentIndexes() : null);
+    if (methodDependencies != null && methodDependencies.getBaseIndexesToKeep() != null) {
+      baseIndexesToKeep = methodDependencies.getBaseIndexesToKeep();
+      baseIndexesToKeepCached = true;
+    }
+    return sliceDependencies;
+  }
+
+  // Stores the dependencies computed so far in the analysis cache, unless nothing new was computed
+  private void writeDependencies() throws IOException, InvalidClassFileException {
+    String cacheKey = getAnalysisCacheKey();
+    if (cacheKey == null || sliceDependencies == null) {
+      return;
+    }
+    if (!sliceDependencies.hasComputedDependencies()
+        && (baseIndexesToKeep == null || baseIndexesToKeepCached)) {
+      return;
+    }
+    analysisCache.writeDependencies(
+        cacheKey,
+        new MethodDependencies(
+            sliceDependencies.getComputedDependencies(),
+            sliceDependencies.getComputedParameterDependentIndexes(),
+            baseIndexesToKeep));
+  }
+
+  // Slice of the method for the current slicing criterion from the analysis cache (if any)
+  private CachedSlice readCachedSlice() throws IOException, InvalidClassFileException {
+    String cacheKey = getAnalysisCacheKey();
+    if (cacheKey == null) {
+      return null;
+    }
+    return analysisCache.readSlice(cacheKey, getInstructionIndexes());
+  }
+
+  // Instructions which are kept independently of the slicing criterion
+  private BitSet getBaseIndexesToKeep() throws IOException, InvalidClassFileException {
+    if (baseIndexesToKeep != null) {
+      return baseIndexesToKeep;
+    }
+    SliceDependencies sliceDependencies = getSliceDependencies();
+    // Restored from the analysis cache together with the dependencies
+    if (baseIndexesToKeep != null) {
+      return baseIndexesToKeep;
+    }
+    baseIndexesToKeep = getBaseIndexesToKeep(sliceDependencies, getBlockDependency());
+    return baseIndexesToKeep;
+  }
+
+  // Key of the method in the analysis cache, null if there is no cache
+  private String getAnalysisCacheKey() throws IOException, InvalidClassFileException {
+    if (analysisCacheKey != null || analysisCache == null || inputJar == null) {
+      return analysisCacheKey;
+    }
+    byte[] classBytes =
+        JarClassIndex.of(new File(inputJar)).getDeclaringClassBytes(methodSignature);
+    if (classBytes == null) {
+      return null;
+    }
+    analysisCacheKey = analysisCache.getKey(classBytes, methodSignature);
+    return analysisCacheKey;
+  }
+
   public Dominance getDominance() throws IOException, InvalidClassFileException {
     if (dominance != null) {
       return dominance;
@@ -763,12 +734,38 @@ public class Slicer {
   }
 
   public SliceResult getSliceResult() throws IOException, InvalidClassFileException {
+    CachedSlice slice = readCachedSlice();
+    if (slice != null) {
+      return new SliceResult(
+          getMethodSignature(),
+          getInstructionIndexes(),
+          slice.getInstructionsToKeep(),
+          slice.getInstructionsToIgnore(),
+          slice.getInstructionPopMap(),
+          getControlFlow());
+    }
+
+    Set<Integer> instructionIndexesToKeep =
+        getInstructionIndexesToKeep(
+            getSliceDependencies(), getBaseIndexesToKeep(), getInstructionIndexes());
+    Set<Integer> instructionIndexesToIgnore =
+        getInstructionIndexesToIgnore(
+            getControlFlow().getMethodData().getInstructions(), instructionIndexesToKeep);
+    Map<Integer, Integer> instructionPopMap = getInstructionPopMap(instructionIndexesToKeep);
+    String cacheKey = getAnalysisCacheKey();
+    if (cacheKey != null) {
+      writeDependencies();
+      analysisCache.writeSlice(
+          cacheKey,
+          getInstructionIndexes(),
+          new CachedSlice(instructionIndexesToKeep, instructionIndexesToIgnore, instructionPopMap));
+    }
     return new SliceResult(
         getMethodSignature(),
         getInstructionIndexes(),
-        getInstructionIndexesToKeep(),
-        getInstructionIndexesToIgnore(),
-        getInstructionPopMap(),
+        instructionIndexesToKeep,
+        instructionIndexesToIgnore,
+        instructionPopMap,
         getControlFlow());
   }
 
@@ -783,7 +780,333 @@ public class Slicer {
     return slicer.getSliceResult();
   }
 
-  public void parseArgs(String[] args) throws ParseException {
+  /**
+   * Slices the method once for each set of instruction indexes. All graphs are built once and
+   * shared by the slicing criteria. The slices are computed one after the other, the stack
+   * corrections for the slices (the expensive part) optionally in parallel.
+   */
+  public List<SliceResult> getSliceResults(
+      List<Set<Integer>> instructionIndexesList, boolean parallel)
+      throws IOException, InvalidClassFileException {
+    SliceDependencies sliceDependencies = getSliceDependencies();
+    BitSet baseIndexesToKeep = getBaseIndexesToKeep();
+    IInstruction[] instructions = getControlFlow().getMethodData().getInstructions();
+
+    final int sliceCount = instructionIndexesList.size();
+    List<Set<Integer>> instructionIndexesToSlice = new ArrayList<>(sliceCount);
+    List<Set<Integer>> instructionIndexesToKeep = new ArrayList<>(sliceCount);
+    for (Set<Integer> instructionIndexes : instructionIndexesList) {
+      Set<Integer> validInstructionIndexes = removeNegativeIndexes(instructionIndexes);
+      instructionIndexesToSlice.add(validInstructionIndexes);
+      instructionIndexesToKeep.add(
+          getInstructionIndexesToKeep(
+              sliceDependencies, baseIndexesToKeep, validInstructionIndexes));
+    }
+    writeDependencies();
+
+    // Everything the stack correction reads must be built before going parallel
+    getBlockDependency().getGraph();
+
+    SliceResult[] sliceResults = new SliceResult[sliceCount];
+    IntStream sliceIndexes = IntStream.range(0, sliceCount);
+    if (parallel) {
+      sliceIndexes = sliceIndexes.parallel();
+    }
+    try {
+      sliceIndexes.forEach(
+          sliceIndex -> {
+            Set<Integer> keep = instructionIndexesToKeep.get(sliceIndex);
+            try {
+              sliceResults[sliceIndex] =
+                  new SliceResult(
+                      getMethodSignature(),
+                      instructionIndexesToSlice.get(sliceIndex),
+                      keep,
+                      getInstructionIndexesToIgnore(instructions, keep),
+                      getInstructionPopMap(keep),
+                      getControlFlow());
+            } catch (IOException | InvalidClassFileException e) {
+              throw new SliceException(e);
+            }
+          });
+    } catch (SliceException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw (InvalidClassFileException) e.getCause();
+    }
+    return Arrays.asList(sliceResults);
+  }
+
+  public static List<SliceResult> getSliceResults(
+      String inputJar,
+      String methodSignature,
+      List<Set<Integer>> instructionIndexesList,
+      boolean parallel)
+      throws IOException, InvalidClassFileException {
+    Slicer slicer = new Slicer();
+    slicer.setInputJar(inputJar);
+    slicer.setMethodSignature(methodSignature);
+
+    return slicer.getSliceResults(instructionIndexesList, parallel);
+  }
+
+  /**
+   * Slices every method of the jar (see {@link Analyzer#getMethods(ClassInstrumenter)}) on a
+   * work-stealing pool with the given number of threads. The instruction indexes are the slicing
+   * criterion of every method (indexes beyond the method are dropped, no indexes yield the
+   * criterion-independent slice). Methods which cannot be sliced are skipped and printed with
+   * their stack traces.
+   *
+   * @return the slice results by method signature in the order of the methods in the jar
+   */
+  public static Map<String, SliceResult> getSliceResultsOfAllMethods(
+      String inputJar, Set<Integer> instructionIndexes, int threads)
+      throws IOException, InvalidClassFileException {
+    Map<String, Exception> sliceFailures = new LinkedHashMap<>();
+    Map<String, SliceResult> sliceResults =
+        getSliceResultsOfAllMethods(inputJar, instructionIndexes, threads, sliceFailures);
+    printSliceFailures(sliceFailures);
+    return sliceResults;
+  }
+
+  /**
+   * Slices every method of the jar like {@link #getSliceResultsOfAllMethods(String, Set, int)}.
+   * Methods which cannot be sliced are skipped and put into the given map with the exception
+   * thrown while slicing them.
+   */
+  public static Map<String, SliceResult> getSliceResultsOfAllMethods(
+      String inputJar,
+      Set<Integer> instructionIndexes,
+      int threads,
+      Map<String, Exception> sliceFailures)
+      throws IOException, InvalidClassFileException {
+    List<MethodData> methods = new ArrayList<>();
+    JarClassIndex.ClassIterator classIterator =
+        JarClassIndex.of(new File(inputJar)).getClassIterator();
+    ClassInstrumenter classInstrumenter;
+    while ((classInstrumenter = classIterator.nextClass()) != null) {
+      methods.addAll(Arrays.asList(Analyzer.getMethods(classInstrumenter)));
+    }
+
+    Map<String, SliceResult> sliceResults = new LinkedHashMap<>();
+    for (SliceResult sliceResult :
+        sliceMethods(
+            inputJar,
+            methods,
+            instructionIndexes,
+            threads,
+            null,
+            sliceResult -> sliceResult,
+            sliceFailures)) {
+      if (sliceResult != null) {
+        sliceResults.put(sliceResult.getMethodSignature(), sliceResult);
+      }
+    }
+    return sliceResults;
+  }
+
+  /**
+   * Slices every method of the input jar and writes the slice results into the result file. The
+   * results are also stored per class next to the result file, so an incremental run only re-slices
+   * the classes which changed since the previous run. Methods which cannot be sliced are printed
+   * with their stack traces and returned by {@link #getSliceFailures()}.
+   */
+  public String makeSliceResultsFile() throws IOException, InvalidClassFileException {
+    sliceFailures.clear();
+    Path incrementalResultsPath = Path.of(resultFilePath + INCREMENTAL_RESULTS_SUFFIX);
+    IncrementalSliceResults previousResults = null;
+    if (incremental) {
+      previousResults = IncrementalSliceResults.read(incrementalResultsPath, instructionIndexes);
+    }
+
+    // Decode only the methods of new or changed classes, the jar is traversed once and the
+    // classes are read one at a time, unchanged ones are released right away
+    JarClassIndex.ClassIterator classIterator =
+        JarClassIndex.of(new File(inputJar)).getClassIterator();
+    List<String> entryNames = new ArrayList<>();
+    List<String> classHashes = new ArrayList<>();
+    List<List<String>> classSliceResults = new ArrayList<>();
+    // Classes with methods which could not be sliced are sliced again by the next run
+    List<Boolean> completeClasses = new ArrayList<>();
+    List<MethodData> methods = new ArrayList<>();
+    List<Integer> methodClassIndexes = new ArrayList<>();
+    int reusedClasses = 0;
+    ClassInstrumenter classInstrumenter;
+    while ((classInstrumenter = classIterator.nextClass()) != null) {
+      int classIndex = entryNames.size();
+      String entryName = classInstrumenter.getInputName();
+      String classHash =
+          IncrementalSliceResults.getClassHash(classInstrumenter.getReader().getBytes());
+      entryNames.add(entryName);
+      classHashes.add(classHash);
+      List<String> sliceResults =
+          previousResults != null ? previousResults.get(entryName, classHash) : null;
+      if (sliceResults != null) {
+        reusedClasses++;
+        classSliceResults.add(sliceResults);
+        completeClasses.add(true);
+        continue;
+      }
+
+      classSliceResults.add(new ArrayList<>());
+      completeClasses.add(true);
+      for (MethodData methodData : Analyzer.getMethods(classInstrumenter)) {
+        methods.add(methodData);
+        methodClassIndexes.add(classIndex);
+      }
+    }
+
+    // Only the printed results are kept, the graphs of a method are released once it is sliced
+    List<String> methodSliceResults =
+        sliceMethods(
+            inputJar,
+            methods,
+            instructionIndexes,
+            threads,
+            analysisCache,
+            SliceResult::toString,
+            sliceFailures);
+    for (int methodIndex = 0; methodIndex < methods.size(); methodIndex++) {
+      int classIndex = methodClassIndexes.get(methodIndex);
+      if (methodSliceResults.get(methodIndex) != null) {
+        classSliceResults.get(classIndex).add(methodSliceResults.get(methodIndex));
+      } else {
+        completeClasses.set(classIndex, false);
+      }
+    }
+
+    IncrementalSliceResults results = new IncrementalSliceResults(instructionIndexes);
+    for (int classIndex = 0; classIndex < entryNames.size(); classIndex++) {
+      results.put(
+          entryNames.get(classIndex),
+          classHashes.get(classIndex),
+          classSliceResults.get(classIndex),
+          completeClasses.get(classIndex));
+    }
+    List<String> sliceResults = results.getSliceResults();
+    Files.write(Path.of(resultFilePath), sliceResults);
+    results.write(incrementalResultsPath);
+    if (verbose) {
+      if (incremental) {
+        System.out.println(
+            "Reused the slice results of "
+                + reusedClasses
+                + " unchanged classes, sliced "
+                + methods.size()
+                + " methods of "
+                + (entryNames.size() - reusedClasses)
+                + " new or changed classes");
+      }
+      System.out.println(
+          "Wrote " + sliceResults.size() + " slice results to \"" + resultFilePath + "\"");
+    }
+    printSliceFailures(sliceFailures);
+    return resultFilePath;
+  }
+
+  private static void printSliceFailures(Map<String, Exception> sliceFailures) {
+    if (sliceFailures.isEmpty()) {
+      return;
+    }
+    System.err.println("Could not slice " + sliceFailures.size() + " methods:");
+    for (Map.Entry<String, Exception> sliceFailure : sliceFailures.entrySet()) {
+      System.err.print(sliceFailure.getKey() + ": ");
+      sliceFailure.getValue().printStackTrace();
+    }
+  }
+
+  private static <T> List<T> sliceMethods(
+      String inputJar,
+      List<MethodData> methods,
+      Set<Integer> instructionIndexes,
+      int threads,
+      AnalysisCache analysisCache,
+      Function<SliceResult, T> resultMapper,
+      Map<String, Exception> sliceFailures) {
+    // Every task stores its exception at the index of its method, the join publishes it
+    Exception[] methodFailures = new Exception[methods.size()];
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<T>> tasks = new ArrayList<>(methods.size());
+      for (int methodIndex = 0; methodIndex < methods.size(); methodIndex++) {
+        final MethodData methodData = methods.get(methodIndex);
+        final int failureIndex = methodIndex;
+        tasks.add(
+            pool.submit(
+                () -> {
+                  try {
+                    return resultMapper.apply(
+                        sliceMethod(
+                            inputJar,
+                            getMethodSignature(methodData),
+                            methodData,
+                            instructionIndexes,
+                            analysisCache));
+                  } catch (Exception e) {
+                    methodFailures[failureIndex] = e;
+                    return null;
+                  }
+                }));
+      }
+
+      List<T> results = new ArrayList<>(tasks.size());
+      for (ForkJoinTask<T> task : tasks) {
+        results.add(task.join());
+      }
+      for (int methodIndex = 0; methodIndex < methods.size(); methodIndex++) {
+        if (methodFailures[methodIndex] != null) {
+          sliceFailures.put(
+              getMethodSignature(methods.get(methodIndex)), methodFailures[methodIndex]);
+        }
+      }
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static SliceResult sliceMethod(
+      String inputJar,
+      String methodSignature,
+      MethodData methodData,
+      Set<Integer> instructionIndexes,
+      AnalysisCache analysisCache)
+      throws IOException, InvalidClassFileException {
+    final int instructionCount = methodData.getInstructions().length;
+    Set<Integer> methodInstructionIndexes = new HashSet<>(instructionIndexes);
+    methodInstructionIndexes.removeIf(index -> index >= instructionCount);
+
+    Slicer slicer = new Slicer();
+    slicer.setInputJar(inputJar);
+    slicer.setMethodSignature(methodSignature);
+    slicer.setInstructionIndexes(methodInstructionIndexes);
+    slicer.setAnalysisCache(analysisCache);
+    // Use the already decoded method instead of searching it in the jar again
+    slicer.controlFlow = new ControlFlow(methodData);
+    return slicer.getSliceResult();
+  }
+
+  // Same format as the --methodSignature argument, e.g. "Lpackage.Class;.method(I)V"
+  private static String getMethodSignature(MethodData methodData) {
+    String classType = methodData.getClassType();
+    return "L"
+        + classType.substring(1, classType.length() - 1).replace('/', '.')
+        + ";."
+        + methodData.getName()
+        + methodData.getSignature();
+  }
+
+  // Carries checked exceptions out of the (parallel) stream evaluating the slicing criteria
+  private static class SliceException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    SliceException(Exception cause) {
+      super(cause);
+    }
+  }
+
+  public void parseArgs(String[] args) throws ParseException, IOException {
     Options options = new Options();
     options.addOption(
         "in",
@@ -806,6 +1129,20 @@ public class Slicer {
         true,
         "path where the additional jars are stored [Default: ../]");
     options.addOption("sp", "showPlots", true, "show dot plots [Default: false]");
+    options.addOption(
+        "am",
+        "allMethods",
+        false,
+        "slice all methods of the input jar and write the slice results into the result file");
+    options.addOption(
+        "t", "threads", true, "threads slicing all methods [Default: available processors]");
+    options.addOption(
+        "cd", "cacheDirectory", true, "directory caching the slicing data [Default: no cache]");
+    options.addOption(
+        "inc",
+        "incremental",
+        false,
+        "slice all methods only of the classes changed since the previous run of --allMethods");
 
     CommandLineParser parser = new DefaultParser();
     CommandLine cmd = parser.parse(options, args);
@@ -814,14 +1151,28 @@ public class Slicer {
     Objects.requireNonNull(inputJar, "-in/--inputJar must be set");
 
     outputJar = cmd.getOptionValue("outputJar", "sliced.jar");
-    resultFilePath = cmd.getOptionValue("resultFilePath", "result.xml");
     additionalJarsPath = cmd.getOptionValue("additionalJarsPath", "../");
 
-    methodSignature = cmd.getOptionValue("methodSignature");
-    Objects.requireNonNull(methodSignature, "-ms/--methodSignature must be set");
+    incremental = cmd.hasOption("incremental");
+    allMethods = cmd.hasOption("allMethods") || incremental;
+    if (cmd.hasOption("threads")) {
+      threads = Integer.parseInt(cmd.getOptionValue("threads"));
+      if (threads < 1) {
+        throw new IllegalArgumentException("-t/--threads must be at least 1");
+      }
+    }
+
+    if (allMethods) {
+      resultFilePath = cmd.getOptionValue("resultFilePath", "sliceResults.txt");
+    } else {
+      resultFilePath = cmd.getOptionValue("resultFilePath", "result.xml");
 
-    mainClass = cmd.getOptionValue("mainClass");
-    Objects.requireNonNull(mainClass, "-mc/--mainClass must be set");
+      methodSignature = cmd.getOptionValue("methodSignature");
+      Objects.requireNonNull(methodSignature, "-ms/--methodSignature must be set");
+
+      mainClass = cmd.getOptionValue("mainClass");
+      Objects.requireNonNull(mainClass, "-mc/--mainClass must be set");
+    }
 
     String exportFormatStr = cmd.getOptionValue("exportFormat", "XML");
 
@@ -836,9 +1187,13 @@ public class Slicer {
     }
 
     // Support multiple instruction indexes (a feature may consist out of many)
-    String instructionIndexesStr = cmd.getOptionValue("instructionIndexes");
+    // When slicing all methods, the instruction indexes are optional
+    String instructionIndexesStr = cmd.getOptionValue("instructionIndexes", allMethods ? "" : null);
     Objects.requireNonNull(instructionIndexesStr, "-ii/--instructionIndexes must be set");
     for (String instructionIndexStr : instructionIndexesStr.split(",")) {
+      if (instructionIndexStr.isEmpty()) {
+        continue;
+      }
       int instructionIndex = Integer.parseInt(instructionIndexStr);
       if (instructionIndex < 0) {
         if (verbose) {
@@ -850,6 +1205,10 @@ public class Slicer {
     }
 
     showPlots = cmd.hasOption("showPlots");
+
+    if (cmd.hasOption("cacheDirectory")) {
+      setAnalysisCache(new AnalysisCache(Path.of(cmd.getOptionValue("cacheDirectory"))));
+    }
   }
 
   public String getInputJar() {
@@ -881,6 +1240,10 @@ public class Slicer {
   }
 
   public void setInstructionIndexes(Set<Integer> instructionIndexes) {
+    this.instructionIndexes = removeNegativeIndexes(instructionIndexes);
+  }
+
+  private Set<Integer> removeNegativeIndexes(Set<Integer> instructionIndexes) {
     instructionIndexes = new HashSet<>(instructionIndexes);
     instructionIndexes.removeIf(
         index -> {
@@ -892,7 +1255,7 @@ public class Slicer {
           }
           return false;
         });
-    this.instructionIndexes = instructionIndexes;
+    return instructionIndexes;
   }
 
   public String getResultFilePath() {
@@ -927,6 +1290,43 @@ public class Slicer {
     this.mainClass = mainClass;
   }
 
+  public AnalysisCache getAnalysisCache() {
+    return analysisCache;
+  }
+
+  public void setAnalysisCache(AnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  public boolean isAllMethods() {
+    return allMethods;
+  }
+
+  public void setAllMethods(boolean allMethods) {
+    this.allMethods = allMethods;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /** Returns the methods which could not be sliced by the last run of makeSliceResultsFile. */
+  public Map<String, Exception> getSliceFailures() {
+    return sliceFailures;
+  }
+
   public void setVerbose(boolean verbose) {
     this.verbose = verbose;
   }
@@ -10,17 +10,21 @@ import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.function.BiConsumer;
-import java.util.stream.IntStream;
 
-public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>> {
+public class StackTrace implements Iterable<Entry<Integer, List<IntStack>>> {
   private final Map<Integer, IInstruction> instructionMap;
   private final ExceptionHandler[][] exceptionHandlers;
   private final Graph<Integer, DefaultEdge> cfg;
 
-  private Map<Integer, List<Stack<Integer>>> stackTrace;
-  private Map<Integer, List<Stack<Integer>>> exceptionStackTrace;
-  private Map<Integer, List<Stack<Integer>>> poppedStackTrace;
-  private Map<Integer, List<Stack<Integer>>> pushedStackTrace;
+  // Stacks are immutable, so the stacks recorded per instruction share their elements with
+  // each other and with the simulated stack instead of being copies
+  private Map<Integer, List<IntStack>> stackTrace;
+  private Map<Integer, List<IntStack>> exceptionStackTrace;
+  private Map<Integer, List<IntStack>> poppedStackTrace;
+  private Map<Integer, List<IntStack>> pushedStackTrace;
+
+  // Simulated stack, shared by all instructions visited from the same start instruction
+  private IntStack stack;
 
   public StackTrace(ControlFlow controlFlow) throws IOException, InvalidClassFileException {
     this.instructionMap = controlFlow.getInstructionMap();
@@ -53,58 +57,106 @@ public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>
     createStackTraces(startNode);
   }
 
+  /** Returns read-only views of the stacks after executing the instruction. */
+  public List<IntStack> getStacks(int instructionIndex) {
+    return getView(stackTrace, instructionIndex);
+  }
+
+  /** Returns read-only views of the elements popped by the instruction (top element last). */
+  public List<IntStack> getPoppedStacks(int instructionIndex) {
+    return getView(poppedStackTrace, instructionIndex);
+  }
+
+  /** Returns read-only views of the elements pushed by the instruction. */
+  public List<IntStack> getPushedStacks(int instructionIndex) {
+    return getView(pushedStackTrace, instructionIndex);
+  }
+
+  /** Returns read-only views of the exception elements pushed for the instruction. */
+  public List<IntStack> getExceptionStacks(int instructionIndex) {
+    return getView(exceptionStackTrace, instructionIndex);
+  }
+
   public List<Stack<Integer>> getStackAtInstructionIndex(int instructionIndex) {
-    return copyStacks(getStackTrace().get(instructionIndex));
+    return copyStacks(getStacks(instructionIndex));
   }
 
   public List<Stack<Integer>> getPoppedStackAtInstructionIndex(int instructionIndex) {
-    return copyStacks(getPoppedStackTrace().get(instructionIndex));
+    return copyStacks(getPoppedStacks(instructionIndex));
   }
 
   public List<Stack<Integer>> getPushedStackAtInstructionIndex(int instructionIndex) {
-    return copyStacks(getPushedStackTrace().get(instructionIndex));
+    return copyStacks(getPushedStacks(instructionIndex));
   }
 
-  public void forEachException(BiConsumer<Integer, List<Stack<Integer>>> consumer) {
-    for (Entry<Integer, List<Stack<Integer>>> entry : getExceptionStackTrace().entrySet()) {
-      List<Stack<Integer>> exceptionStacks = entry.getValue();
-      consumer.accept(entry.getKey(), copyStacks(exceptionStacks));
-    }
+  public void forEachException(BiConsumer<Integer, List<IntStack>> consumer) {
+    forEach(exceptionStackTrace, consumer);
   }
 
-  public void forEachPopped(BiConsumer<Integer, List<Stack<Integer>>> consumer) {
-    for (Entry<Integer, List<Stack<Integer>>> entry : getPoppedStackTrace().entrySet()) {
-      List<Stack<Integer>> poppedStacks = entry.getValue();
-      consumer.accept(entry.getKey(), copyStacks(poppedStacks));
-    }
+  public void forEachPopped(BiConsumer<Integer, List<IntStack>> consumer) {
+    forEach(poppedStackTrace, consumer);
   }
 
-  public void forEachPushed(BiConsumer<Integer, List<Stack<Integer>>> consumer) {
-    for (Entry<Integer, List<Stack<Integer>>> entry : getPushedStackTrace().entrySet()) {
-      List<Stack<Integer>> pushedStacks = entry.getValue();
-      consumer.accept(entry.getKey(), copyStacks(pushedStacks));
-    }
+  public void forEachPushed(BiConsumer<Integer, List<IntStack>> consumer) {
+    forEach(pushedStackTrace, consumer);
   }
 
-  public Map<Integer, List<Stack<Integer>>> getStackTrace() {
-    return stackTrace;
+  public Map<Integer, List<IntStack>> getStackTrace() {
+    return Collections.unmodifiableMap(stackTrace);
   }
 
-  public Map<Integer, List<Stack<Integer>>> getExceptionStackTrace() {
-    return exceptionStackTrace;
+  public Map<Integer, List<IntStack>> getExceptionStackTrace() {
+    return Collections.unmodifiableMap(exceptionStackTrace);
   }
 
-  public Map<Integer, List<Stack<Integer>>> getPoppedStackTrace() {
-    return poppedStackTrace;
+  public Map<Integer, List<IntStack>> getPoppedStackTrace() {
+    return Collections.unmodifiableMap(poppedStackTrace);
   }
 
-  public Map<Integer, List<Stack<Integer>>> getPushedStackTrace() {
-    return pushedStackTrace;
+  public Map<Integer, List<IntStack>> getPushedStackTrace() {
+    return Collections.unmodifiableMap(pushedStackTrace);
   }
 
-  private void createStackTraceFor(
-      Map<Integer, Set<String>> instructionExceptions, Stack<Integer> stack, Integer index)
-      throws IOException, InvalidClassFileException {
+  private static List<IntStack> getView(
+      Map<Integer, List<IntStack>> stacksByIndex, int instructionIndex) {
+    List<IntStack> stacks = stacksByIndex.get(instructionIndex);
+    return stacks != null ? Collections.unmodifiableList(stacks) : Collections.emptyList();
+  }
+
+  private static void forEach(
+      Map<Integer, List<IntStack>> stacksByIndex, BiConsumer<Integer, List<IntStack>> consumer) {
+    for (Entry<Integer, List<IntStack>> entry : stacksByIndex.entrySet()) {
+      consumer.accept(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+    }
+  }
+
+  private static void record(
+      Map<Integer, List<IntStack>> stacksByIndex, Integer index, IntStack stack) {
+    stacksByIndex.computeIfAbsent(index, i -> new ArrayList<>(1)).add(stack);
+  }
+
+  // Depth-first traversal with an explicit worklist. A successor is checked when it is reached in
+  // the edge order, after the instructions reachable from the previous successors were simulated,
+  // which matches a recursive traversal sharing the simulated stack.
+  private void createStackTraceFor(Map<Integer, Set<String>> instructionExceptions, Integer index) {
+    Deque<Iterator<DefaultEdge>> worklist = new ArrayDeque<>();
+    simulateInstruction(instructionExceptions, index);
+    worklist.push(cfg.outgoingEdgesOf(index).iterator());
+    while (!worklist.isEmpty()) {
+      Iterator<DefaultEdge> edges = worklist.peek();
+      if (!edges.hasNext()) {
+        worklist.pop();
+        continue;
+      }
+      Integer target = cfg.getEdgeTarget(edges.next());
+      if (!stackTrace.containsKey(target)) {
+        simulateInstruction(instructionExceptions, target);
+        worklist.push(cfg.outgoingEdgesOf(target).iterator());
+      }
+    }
+  }
+
+  private void simulateInstruction(Map<Integer, Set<String>> instructionExceptions, Integer index) {
     IInstruction instruction = instructionMap.get(index);
 
     // Exception handling
@@ -112,22 +164,18 @@ public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>
         instructionExceptions.getOrDefault(index, Collections.emptySet());
     int pushedExceptionCount = instructionException.size();
 
-    Stack<Integer> exceptionStack = new Stack<>();
+    IntStack exceptionStack = IntStack.repeat(-1 * index, pushedExceptionCount);
     for (int pushedException = 0; pushedException < pushedExceptionCount; pushedException++) {
-      stack.push(-1 * index);
-      exceptionStack.push(-1 * index);
+      stack = stack.push(-1 * index);
     }
-    List<Stack<Integer>> instructionExceptionStack =
-        exceptionStackTrace.getOrDefault(index, new ArrayList<>());
-    instructionExceptionStack.add(exceptionStack);
-    exceptionStackTrace.putIfAbsent(index, instructionExceptionStack);
+    record(exceptionStackTrace, index, exceptionStack);
 
     int pushedElementCount = Utilities.getPushedElementCount(instruction);
     int poppedElementCount = Utilities.getPoppedElementCount(instruction);
 
     // TODO That is maybe error-prone handling dup(2,0) is pain as hell
     if (instruction instanceof DupInstruction) {
-      int topmostStackInstructionIndex = stack.elementAt(stack.size() - 1);
+      int topmostStackInstructionIndex = stack.get(stack.size() - 1);
       IInstruction lastPushedInstruction = instructionMap.get(topmostStackInstructionIndex);
       String pushedType = lastPushedInstruction.getPushedType(null);
       int wordSize;
@@ -145,37 +193,21 @@ public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>
     }
 
     // Simulate POP stack execution
-    Stack<Integer> poppedStack = new Stack<>();
-    for (int popIteration = 0; popIteration < poppedElementCount; popIteration++) {
-      Integer poppedIndex = stack.pop();
-      poppedStack.insertElementAt(poppedIndex, 0);
+    int[] poppedElements = new int[poppedElementCount];
+    for (int popIteration = poppedElementCount - 1; popIteration >= 0; popIteration--) {
+      poppedElements[popIteration] = stack.peek();
+      stack = stack.pop();
     }
-    List<Stack<Integer>> instructionPoppedStack =
-        poppedStackTrace.getOrDefault(index, new ArrayList<>());
-    instructionPoppedStack.add(poppedStack);
-    poppedStackTrace.putIfAbsent(index, instructionPoppedStack);
+    record(poppedStackTrace, index, IntStack.of(poppedElements));
 
     // Simulate PUSH stack execution
-    Stack<Integer> pushedStack = new Stack<>();
     for (int pushIteration = 0; pushIteration < pushedElementCount; pushIteration++) {
-      stack.push(index);
-      pushedStack.add(index);
+      stack = stack.push(index);
     }
-    List<Stack<Integer>> instructionPushedStack =
-        pushedStackTrace.getOrDefault(index, new ArrayList<>());
-    instructionPushedStack.add(pushedStack);
-    pushedStackTrace.putIfAbsent(index, instructionPushedStack);
+    record(pushedStackTrace, index, IntStack.repeat(index, pushedElementCount));
 
     // Fill combined stack trace
-    List<Stack<Integer>> instructionStack = stackTrace.getOrDefault(index, new ArrayList<>());
-    instructionStack.add(copyStack(stack));
-    stackTrace.putIfAbsent(index, instructionStack);
-
-    for (DefaultEdge edge : cfg.outgoingEdgesOf(index)) {
-      if (!this.stackTrace.containsKey(cfg.getEdgeTarget(edge))) {
-        createStackTraceFor(instructionExceptions, stack, cfg.getEdgeTarget(edge));
-      }
-    }
+    record(stackTrace, index, stack);
   }
 
   private void createStackTraces(int startIndex) throws IOException, InvalidClassFileException {
@@ -188,7 +220,8 @@ public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>
     Map<Integer, Set<String>> instructionExceptions =
         Utilities.getInstructionExceptions(instructions, exceptionHandlers);
 
-    createStackTraceFor(instructionExceptions, new Stack<>(), startIndex);
+    stack = IntStack.empty();
+    createStackTraceFor(instructionExceptions, startIndex);
 
     // TODO Add stack traces for all non called instructions (no edge target). This can happen if a
     //  block is processed which is the body of a conditional instruction (if). The else-case could
@@ -199,36 +232,26 @@ public class StackTrace implements Iterable<Entry<Integer, List<Stack<Integer>>>
     cfgVertexSet.removeAll(processedVertices);
 
     for (Integer remainingVertex : cfgVertexSet) {
-      createStackTraceFor(instructionExceptions, new Stack<>(), remainingVertex);
+      stack = IntStack.empty();
+      createStackTraceFor(instructionExceptions, remainingVertex);
     }
+    stack = null;
 
 //    assert pushedStackTrace.keySet().size() == instructions.length;
 //    assert poppedStackTrace.keySet().size() == instructions.length;
 //    assert exceptionStackTrace.keySet().size() == instructions.length;
   }
 
-  public static List<Stack<Integer>> copyStacks(List<Stack<Integer>> stacks) {
-    List<Stack<Integer>> stacksCopy = new ArrayList<>();
-    IntStream.range(0, stacks.size())
-        .forEach(
-            i -> {
-              stacksCopy.add(copyStack(stacks.get(i)));
-            });
+  public static List<Stack<Integer>> copyStacks(List<IntStack> stacks) {
+    List<Stack<Integer>> stacksCopy = new ArrayList<>(stacks.size());
+    for (IntStack stack : stacks) {
+      stacksCopy.add(stack.toStack());
+    }
     return stacksCopy;
   }
 
-  private static Stack<Integer> copyStack(Stack<Integer> stack) {
-    Stack<Integer> stackCopy = new Stack<>();
-    IntStream.range(0, stack.size())
-        .forEach(
-            i -> {
-              stackCopy.push(stack.get(i));
-            });
-    return stackCopy;
-  }
-
   @Override
-  public Iterator<Entry<Integer, List<Stack<Integer>>>> iterator() {
-    return stackTrace.entrySet().iterator();
+  public Iterator<Entry<Integer, List<IntStack>>> iterator() {
+    return getStackTrace().entrySet().iterator();
   }
 }
@@ -0,0 +1,317 @@
+package de.uniks.vs.methodresourceprediction.slicer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Writes a jar in a single pass. New entries are deflated, entries of other jars are copied with
+// their compressed data as is (without inflating and deflating them again). The first entry of a
+// name wins, later entries with the same name are skipped.
+public class StreamingJarWriter implements Closeable {
+  // Zip format constants (see the .ZIP File Format Specification)
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_LENGTH = 0xffff;
+  private static final int MAX_ENTRY_COUNT = 0xffff;
+  private static final int VERSION = 20;
+  private static final int DEFLATED = 8;
+  // Sizes and CRC are stored in a data descriptor after the data instead of the local header
+  private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+  private static final int UTF8_NAME_FLAG = 0x0800;
+
+  private final File jar;
+  private final FileChannel channel;
+  private final Set<String> entryNames = new HashSet<>();
+  private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+  private int entryCount = 0;
+
+  public StreamingJarWriter(File jar) throws IOException {
+    this.jar = jar;
+    this.channel =
+        FileChannel.open(
+            jar.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  public boolean contains(String entryName) {
+    return entryNames.contains(entryName);
+  }
+
+  /**
+   * Adds a deflated entry with the bytes.
+   *
+   * @return false if the jar already contains an entry with the name
+   */
+  public boolean putEntry(String entryName, byte[] bytes) throws IOException {
+    if (!entryNames.add(entryName)) {
+      return false;
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    byte[] compressedBytes = deflate(bytes);
+    byte[] nameBytes = entryName.getBytes(StandardCharsets.UTF_8);
+    int dosTime = getDosTime(LocalDateTime.now());
+
+    ByteBuffer header = newBuffer(LOCAL_FILE_HEADER_SIZE + nameBytes.length);
+    header.putInt(LOCAL_FILE_HEADER_SIGNATURE);
+    header.putShort((short) VERSION);
+    header.putShort((short) UTF8_NAME_FLAG);
+    header.putShort((short) DEFLATED);
+    header.putInt(dosTime);
+    header.putInt((int) crc.getValue());
+    header.putInt(compressedBytes.length);
+    header.putInt(bytes.length);
+    header.putShort((short) nameBytes.length);
+    header.putShort((short) 0);
+    header.put(nameBytes);
+
+    ByteBuffer directoryHeader = newBuffer(CENTRAL_DIRECTORY_HEADER_SIZE + nameBytes.length);
+    directoryHeader.putInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+    directoryHeader.putShort((short) VERSION);
+    // Same fields as in the local file header up to (including) the name length
+    directoryHeader.put(header.array(), 4, 24);
+    directoryHeader.putShort((short) 0);
+    directoryHeader.putShort((short) 0);
+    directoryHeader.putShort((short) 0);
+    directoryHeader.putShort((short) 0);
+    directoryHeader.putInt(0);
+    directoryHeader.putInt(getLocalHeaderOffset());
+    directoryHeader.put(nameBytes);
+
+    write(header.flip());
+    write(ByteBuffer.wrap(compressedBytes));
+    addToCentralDirectory(directoryHeader.array());
+    return true;
+  }
+
+  /**
+   * Copies the entries of the jar in their order that are accepted by the filter and not yet
+   * contained in this jar. The compressed data is copied unchanged.
+   */
+  public void copyEntries(File sourceJar, Predicate<String> filter) throws IOException {
+    try (FileChannel sourceChannel =
+        FileChannel.open(sourceJar.toPath(), StandardOpenOption.READ)) {
+      long sourceLength = sourceChannel.size();
+      ByteBuffer directory = readCentralDirectory(sourceJar, sourceChannel);
+      while (directory.hasRemaining()) {
+        int offset = directory.position();
+        if (directory.remaining() < CENTRAL_DIRECTORY_HEADER_SIZE
+            || directory.getInt(offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+          throw new IOException("Invalid central directory in " + sourceJar);
+        }
+        int flags = Short.toUnsignedInt(directory.getShort(offset + 8));
+        long compressedSize = Integer.toUnsignedLong(directory.getInt(offset + 20));
+        int nameLength = Short.toUnsignedInt(directory.getShort(offset + 28));
+        int extraLength = Short.toUnsignedInt(directory.getShort(offset + 30));
+        int commentLength = Short.toUnsignedInt(directory.getShort(offset + 32));
+        long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(offset + 42));
+        int headerLength =
+            CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        if (headerLength > directory.remaining()) {
+          throw new IOException("Invalid central directory in " + sourceJar);
+        }
+        if (compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+          throw new IOException("Zip64 jars are not supported: " + sourceJar);
+        }
+
+        byte[] directoryHeader = new byte[headerLength];
+        directory.get(directoryHeader);
+        String entryName =
+            new String(
+                directoryHeader, CENTRAL_DIRECTORY_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+        if (entryNames.contains(entryName) || !filter.test(entryName)) {
+          continue;
+        }
+        entryNames.add(entryName);
+
+        ByteBuffer sourceHeader = newBuffer(LOCAL_FILE_HEADER_SIZE);
+        readFully(sourceChannel, sourceHeader, localHeaderOffset);
+        if (sourceHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+          throw new IOException(
+              "Invalid local file header of \"" + entryName + "\" in " + sourceJar);
+        }
+        int localNameLength = Short.toUnsignedInt(sourceHeader.getShort(26));
+        int localExtraLength = Short.toUnsignedInt(sourceHeader.getShort(28));
+        long extraOffset = localHeaderOffset + LOCAL_FILE_HEADER_SIZE + localNameLength;
+        ByteBuffer localExtra = newBuffer(localExtraLength);
+        readFully(sourceChannel, localExtra, extraOffset);
+        long dataOffset = extraOffset + localExtraLength;
+        if (dataOffset + compressedSize > sourceLength) {
+          throw new IOException("Truncated entry \"" + entryName + "\" in " + sourceJar);
+        }
+
+        // The local header is rebuilt from the central directory, so the sizes and the CRC are
+        // known upfront and a data descriptor of the source entry does not need to be copied
+        ByteBuffer header = newBuffer(LOCAL_FILE_HEADER_SIZE + nameLength + localExtraLength);
+        header.putInt(LOCAL_FILE_HEADER_SIGNATURE);
+        header.put(directoryHeader, 6, 22);
+        header.putShort(6, (short) (flags & ~DATA_DESCRIPTOR_FLAG));
+        header.putShort((short) nameLength);
+        header.putShort((short) localExtraLength);
+        header.put(directoryHeader, CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+        header.put(localExtra.flip());
+
+        ByteBuffer.wrap(directoryHeader)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putShort(8, (short) (flags & ~DATA_DESCRIPTOR_FLAG))
+            .putInt(42, getLocalHeaderOffset());
+
+        write(header.flip());
+        transferFully(sourceChannel, dataOffset, compressedSize, entryName);
+        addToCentralDirectory(directoryHeader);
+      }
+    }
+  }
+
+  /** Writes the central directory and closes the jar. */
+  @Override
+  public void close() throws IOException {
+    try {
+      int directoryOffset = getLocalHeaderOffset();
+      write(ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+      ByteBuffer end = newBuffer(END_OF_CENTRAL_DIRECTORY_SIZE);
+      end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      end.putShort((short) 0);
+      end.putShort((short) 0);
+      end.putShort((short) entryCount);
+      end.putShort((short) entryCount);
+      end.putInt(centralDirectory.size());
+      end.putInt(directoryOffset);
+      end.putShort((short) 0);
+      write(end.flip());
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void addToCentralDirectory(byte[] directoryHeader) throws IOException {
+    if (++entryCount > MAX_ENTRY_COUNT) {
+      throw new IOException("Zip64 jars are not supported: " + jar);
+    }
+    centralDirectory.write(directoryHeader);
+  }
+
+  private int getLocalHeaderOffset() throws IOException {
+    long position = channel.position();
+    if (position > 0xffffffffL) {
+      throw new IOException("Zip64 jars are not supported: " + jar);
+    }
+    return (int) position;
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void transferFully(FileChannel sourceChannel, long offset, long count, String entryName)
+      throws IOException {
+    long transferred = 0;
+    while (transferred < count) {
+      long bytes = sourceChannel.transferTo(offset + transferred, count - transferred, channel);
+      if (bytes <= 0) {
+        throw new IOException("Truncated entry \"" + entryName + "\"");
+      }
+      transferred += bytes;
+    }
+  }
+
+  private static ByteBuffer readCentralDirectory(File sourceJar, FileChannel sourceChannel)
+      throws IOException {
+    // The end of central directory record is followed by a comment of variable length
+    long length = sourceChannel.size();
+    int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_LENGTH);
+    ByteBuffer tail = newBuffer(tailLength);
+    readFully(sourceChannel, tail, length - tailLength);
+
+    int endOffset = -1;
+    for (int offset = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= 0; offset--) {
+      if (tail.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        endOffset = offset;
+        break;
+      }
+    }
+    if (endOffset == -1) {
+      throw new IOException("No end of central directory found in " + sourceJar);
+    }
+
+    int entryCount = Short.toUnsignedInt(tail.getShort(endOffset + 10));
+    long directorySize = Integer.toUnsignedLong(tail.getInt(endOffset + 12));
+    long directoryOffset = Integer.toUnsignedLong(tail.getInt(endOffset + 16));
+    if (entryCount == 0xffff || directoryOffset == 0xffffffffL) {
+      throw new IOException("Zip64 jars are not supported: " + sourceJar);
+    }
+    if (directoryOffset + directorySize > length) {
+      throw new IOException("Invalid central directory in " + sourceJar);
+    }
+
+    ByteBuffer directory = newBuffer((int) directorySize);
+    readFully(sourceChannel, directory, directoryOffset);
+    return directory.flip();
+  }
+
+  private static void readFully(FileChannel sourceChannel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int bytes = sourceChannel.read(buffer, position);
+      if (bytes < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+      position += bytes;
+    }
+  }
+
+  private static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2 + 64);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  // MS-DOS date and time as stored in zip headers (time in the lower, date in the upper 16 bits)
+  private static int getDosTime(LocalDateTime time) {
+    if (time.getYear() < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (time.getYear() - 1980) << 25
+        | time.getMonthValue() << 21
+        | time.getDayOfMonth() << 16
+        | time.getHour() << 11
+        | time.getMinute() << 5
+        | time.getSecond() >> 1;
+  }
+
+  private static ByteBuffer newBuffer(int capacity) {
+    return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
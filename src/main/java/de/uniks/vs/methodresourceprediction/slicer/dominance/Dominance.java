@@ -5,12 +5,7 @@ import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import de.uniks.vs.methodresourceprediction.slicer.ControlFlow;
 import de.uniks.vs.methodresourceprediction.slicer.SlicerGraph;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.AllDirectedPaths;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.io.ComponentNameProvider;
@@ -21,6 +16,7 @@ public class Dominance extends SlicerGraph<Integer> {
   private Graph<Integer, DefaultEdge> controlFlowGraph;
 
   private Graph<Integer, DefaultEdge> graph;
+  private DominatorTree dominatorTree;
   private int startIndex;
 
   public Dominance(ControlFlow controlFlow, int startIndex)
@@ -35,6 +31,14 @@ public class Dominance extends SlicerGraph<Integer> {
     this.startIndex = startIndex;
   }
 
+  public DominatorTree getDominatorTree() {
+    if (dominatorTree != null) {
+      return dominatorTree;
+    }
+    dominatorTree = new DominatorTree(controlFlowGraph, startIndex);
+    return dominatorTree;
+  }
+
   @Override
   public Graph<Integer, DefaultEdge> getGraph() throws IOException, InvalidClassFileException {
     if (graph != null) {
@@ -49,18 +53,19 @@ public class Dominance extends SlicerGraph<Integer> {
 
     // http://infolab.stanford.edu/~ullman/dragon/w06/lectures/cs243-lec08-wei.pdf
     // If X appears on every path from START to Y, then X dominates Y.
-
-    AllDirectedPaths<Integer, DefaultEdge> cfgPaths = new AllDirectedPaths<>(cfg);
+    // Instead of enumerating all paths, the dominators of Y are read from the
+    // dominator tree (Y and all of its ancestors).
+    DominatorTree dominatorTree = getDominatorTree();
     for (int y : cfg.vertexSet()) {
-      final List<GraphPath<Integer, DefaultEdge>> cfgPathFromStartToY =
-          cfgPaths.getAllPaths(startIndex, y, true, cfg.vertexSet().size());
-
-      Set<Integer> Xs = new HashSet<>(cfg.vertexSet());
-      for (GraphPath<Integer, DefaultEdge> gp : cfgPathFromStartToY) {
-        Xs.retainAll(gp.getVertexList());
+      if (!dominatorTree.isReachable(y)) {
+        // There is no path from START to Y, so every X appears on all (zero) paths
+        for (int x : cfg.vertexSet()) {
+          graph.addEdge(x, y);
+        }
+        continue;
       }
 
-      for (int x : Xs) {
+      for (int x : dominatorTree.getDominators(y)) {
         // x dominates y
         graph.addEdge(x, y);
       }
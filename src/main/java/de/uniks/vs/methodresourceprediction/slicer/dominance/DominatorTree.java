@@ -0,0 +1,252 @@
+package de.uniks.vs.methodresourceprediction.slicer.dominance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+// Iterative dominator computation as described by Cooper, Harvey and Kennedy in "A Simple, Fast
+// Dominance Algorithm" (https://www.cs.rice.edu/~keith/EMBED/dom.pdf). Vertices are numbered in
+// reverse post order so that the idom array can be intersected with plain integer comparisons.
+//
+// If there is more than one start vertex (e.g. all exits of a reversed control flow graph for
+// post-dominance), a virtual root joining all of them is placed in front of the order. It is
+// never exposed to callers.
+public class DominatorTree {
+  private static final int UNDEFINED = -1;
+
+  private final Graph<Integer, DefaultEdge> graph;
+  private final List<Integer> startIndexes;
+  private final boolean virtualRoot;
+
+  // Reachable vertices in reverse post order and the reverse mapping
+  private int[] vertices;
+  private Map<Integer, Integer> orderNumbers;
+
+  // Immediate dominator of every vertex (by order number)
+  private int[] immediateDominators;
+
+  // Pre- and post-order numbers of the dominator tree for constant time dominance queries
+  private int[] treePreOrder;
+  private int[] treePostOrder;
+
+  public DominatorTree(Graph<Integer, DefaultEdge> graph, int startIndex) {
+    this(graph, List.of(startIndex));
+  }
+
+  public DominatorTree(Graph<Integer, DefaultEdge> graph, Collection<Integer> startIndexes) {
+    this.graph = graph;
+    this.startIndexes = new ArrayList<>(new LinkedHashSet<>(startIndexes));
+    this.virtualRoot = this.startIndexes.size() != 1;
+
+    computeReversePostOrder();
+    computeImmediateDominators();
+    computeTreeOrder();
+  }
+
+  private void computeReversePostOrder() {
+    List<Integer> postOrder = new ArrayList<>(graph.vertexSet().size());
+    Map<Integer, Boolean> visited = new HashMap<>();
+
+    // Iterative depth first search to survive long straight-line methods. Searching from every
+    // start vertex in turn is the same as a single search from the virtual root.
+    Deque<Iterator<DefaultEdge>> iterators = new ArrayDeque<>();
+    Deque<Integer> path = new ArrayDeque<>();
+    for (Integer start : startIndexes) {
+      if (visited.putIfAbsent(start, true) != null) {
+        continue;
+      }
+      path.push(start);
+      iterators.push(graph.outgoingEdgesOf(start).iterator());
+      while (!path.isEmpty()) {
+        Iterator<DefaultEdge> iterator = iterators.peek();
+        if (iterator.hasNext()) {
+          Integer target = graph.getEdgeTarget(iterator.next());
+          if (visited.putIfAbsent(target, true) == null) {
+            path.push(target);
+            iterators.push(graph.outgoingEdgesOf(target).iterator());
+          }
+          continue;
+        }
+        postOrder.add(path.pop());
+        iterators.pop();
+      }
+    }
+
+    // The virtual root (if any) always gets the order number 0
+    int offset = virtualRoot ? 1 : 0;
+    vertices = new int[postOrder.size() + offset];
+    orderNumbers = new HashMap<>();
+    for (int orderNumber = offset; orderNumber < vertices.length; orderNumber++) {
+      int vertex = postOrder.get(vertices.length - 1 - orderNumber);
+      vertices[orderNumber] = vertex;
+      orderNumbers.put(vertex, orderNumber);
+    }
+  }
+
+  private void computeImmediateDominators() {
+    // Predecessors of every reachable vertex, unreachable ones cannot contribute
+    int[][] predecessors = new int[vertices.length][];
+    for (int orderNumber = virtualRoot ? 1 : 0; orderNumber < vertices.length; orderNumber++) {
+      int[] vertexPredecessors = new int[graph.inDegreeOf(vertices[orderNumber])];
+      int predecessorCount = 0;
+      for (DefaultEdge edge : graph.incomingEdgesOf(vertices[orderNumber])) {
+        Integer predecessor = orderNumbers.get(graph.getEdgeSource(edge));
+        if (predecessor != null) {
+          vertexPredecessors[predecessorCount++] = predecessor;
+        }
+      }
+      predecessors[orderNumber] = Arrays.copyOf(vertexPredecessors, predecessorCount);
+    }
+    if (virtualRoot) {
+      // The virtual root is the only predecessor of the start vertices it joins
+      predecessors[0] = new int[0];
+      for (Integer start : startIndexes) {
+        int orderNumber = orderNumbers.get(start);
+        int[] startPredecessors =
+            Arrays.copyOf(predecessors[orderNumber], predecessors[orderNumber].length + 1);
+        startPredecessors[startPredecessors.length - 1] = 0;
+        predecessors[orderNumber] = startPredecessors;
+      }
+    }
+
+    immediateDominators = new int[vertices.length];
+    Arrays.fill(immediateDominators, UNDEFINED);
+    immediateDominators[0] = 0;
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int orderNumber = 1; orderNumber < vertices.length; orderNumber++) {
+        int newImmediateDominator = UNDEFINED;
+        for (int predecessor : predecessors[orderNumber]) {
+          if (immediateDominators[predecessor] == UNDEFINED) {
+            // Not processed yet
+            continue;
+          }
+          newImmediateDominator =
+              newImmediateDominator == UNDEFINED
+                  ? predecessor
+                  : intersect(predecessor, newImmediateDominator);
+        }
+        if (immediateDominators[orderNumber] != newImmediateDominator) {
+          immediateDominators[orderNumber] = newImmediateDominator;
+          changed = true;
+        }
+      }
+    }
+  }
+
+  private int intersect(int finger1, int finger2) {
+    while (finger1 != finger2) {
+      while (finger1 > finger2) {
+        finger1 = immediateDominators[finger1];
+      }
+      while (finger2 > finger1) {
+        finger2 = immediateDominators[finger2];
+      }
+    }
+    return finger1;
+  }
+
+  private void computeTreeOrder() {
+    // Children lists of the dominator tree in a compact (CSR-like) layout
+    int[] childCount = new int[vertices.length + 1];
+    for (int orderNumber = 1; orderNumber < vertices.length; orderNumber++) {
+      childCount[immediateDominators[orderNumber] + 1]++;
+    }
+    for (int orderNumber = 0; orderNumber < vertices.length; orderNumber++) {
+      childCount[orderNumber + 1] += childCount[orderNumber];
+    }
+    int[] childOffsets = Arrays.copyOf(childCount, childCount.length);
+    int[] children = new int[Math.max(0, vertices.length - 1)];
+    for (int orderNumber = 1; orderNumber < vertices.length; orderNumber++) {
+      children[childOffsets[immediateDominators[orderNumber]]++] = orderNumber;
+    }
+
+    treePreOrder = new int[vertices.length];
+    treePostOrder = new int[vertices.length];
+    if (vertices.length == 0) {
+      return;
+    }
+
+    int preOrderCounter = 0;
+    int postOrderCounter = 0;
+    int[] nextChild = Arrays.copyOf(childCount, vertices.length);
+    Deque<Integer> path = new ArrayDeque<>();
+    path.push(0);
+    treePreOrder[0] = preOrderCounter++;
+    while (!path.isEmpty()) {
+      int node = path.peek();
+      if (nextChild[node] < childCount[node + 1]) {
+        int child = children[nextChild[node]++];
+        treePreOrder[child] = preOrderCounter++;
+        path.push(child);
+        continue;
+      }
+      treePostOrder[path.pop()] = postOrderCounter++;
+    }
+  }
+
+  public boolean isReachable(int vertex) {
+    return orderNumbers.containsKey(vertex);
+  }
+
+  public Integer getImmediateDominator(int vertex) {
+    Integer orderNumber = orderNumbers.get(vertex);
+    if (orderNumber == null
+        || orderNumber == 0
+        || (virtualRoot && immediateDominators[orderNumber] == 0)) {
+      // Unreachable vertices and the start vertices do not have an immediate dominator
+      return null;
+    }
+    return vertices[immediateDominators[orderNumber]];
+  }
+
+  /** Checks if {@code dominator} dominates {@code vertex} (every vertex dominates itself). */
+  public boolean dominates(int dominator, int vertex) {
+    Integer dominatorOrderNumber = orderNumbers.get(dominator);
+    Integer vertexOrderNumber = orderNumbers.get(vertex);
+    if (dominatorOrderNumber == null || vertexOrderNumber == null) {
+      return false;
+    }
+    return treePreOrder[dominatorOrderNumber] <= treePreOrder[vertexOrderNumber]
+        && treePostOrder[vertexOrderNumber] <= treePostOrder[dominatorOrderNumber];
+  }
+
+  /**
+   * Returns all dominators of a vertex, starting with the vertex itself and walking up the tree
+   * to the start vertex. Unreachable vertices yield an empty list.
+   */
+  public List<Integer> getDominators(int vertex) {
+    List<Integer> dominators = new ArrayList<>();
+    Integer orderNumber = orderNumbers.get(vertex);
+    if (orderNumber == null) {
+      return dominators;
+    }
+    while (orderNumber != 0) {
+      dominators.add(vertices[orderNumber]);
+      orderNumber = immediateDominators[orderNumber];
+    }
+    if (!virtualRoot) {
+      dominators.add(vertices[0]);
+    }
+    return dominators;
+  }
+
+  public Graph<Integer, DefaultEdge> getGraph() {
+    return graph;
+  }
+
+  public List<Integer> getStartIndexes() {
+    return startIndexes;
+  }
+}
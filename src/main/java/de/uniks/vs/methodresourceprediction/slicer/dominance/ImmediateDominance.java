@@ -6,9 +6,7 @@ import de.uniks.vs.methodresourceprediction.slicer.ControlFlow;
 import de.uniks.vs.methodresourceprediction.slicer.SlicerGraph;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
@@ -33,51 +31,19 @@ public class ImmediateDominance extends SlicerGraph<Integer> {
 
     // Every vertex in the control flow is present in the forward dominance graph
     // as well.
-    Graph<Integer, DefaultEdge> strictDominanceGraph = strictDominance.getGraph();
-    strictDominanceGraph.vertexSet().forEach(v -> graph.addVertex(v));
+    Dominance dominance = strictDominance.getDominance();
+    Graph<Integer, DefaultEdge> cfg = dominance.getControlFlowGraph();
+    cfg.vertexSet().forEach(v -> graph.addVertex(v));
 
     // The immediate dominator or idom of a node n is the unique node that strictly
     // dominates n but does not strictly dominate any other node that strictly
-    // dominates n
-    for (int n : strictDominanceGraph.vertexSet()) {
-      // Find all nodes that strictly dominate n
-      final Set<DefaultEdge> strictlyDominatingEdgesOfN = strictDominanceGraph.incomingEdgesOf(n);
-      final Set<Integer> strictlyDominatingNodesOfN = new HashSet<>();
-      for (DefaultEdge strictlyDominatingEdgeOfN : strictlyDominatingEdgesOfN) {
-        strictlyDominatingNodesOfN.add(
-            strictDominanceGraph.getEdgeSource(strictlyDominatingEdgeOfN));
-      }
-
-      // ... but does not strictly dominate any other node that strictly dominates n
-      Integer uniqueDominatingNode = null;
-      for (int strictlyDominatingNodeOfN : strictlyDominatingNodesOfN) {
-        boolean dominatesOtherNodeThatDominatesN = false;
-        for (int strictlyDominatingNodeOfN2 : strictlyDominatingNodesOfN) {
-          if (strictDominanceGraph.containsEdge(
-              strictlyDominatingNodeOfN, strictlyDominatingNodeOfN2)) {
-            dominatesOtherNodeThatDominatesN = true;
-            break; // optimization
-          }
-        }
-
-        if (!dominatesOtherNodeThatDominatesN) {
-          if (uniqueDominatingNode == null) {
-            uniqueDominatingNode = strictlyDominatingNodeOfN;
-          } else {
-            // Not possible
-            throw new RuntimeException();
-          }
-        }
-      }
-
-      if (uniqueDominatingNode == null && !strictDominanceGraph.incomingEdgesOf(n).isEmpty()) {
-        // Not possible
-        throw new RuntimeException(
-            "Starting node " + n + " has a dominating node which is not possible");
-      }
-      //			System.out.println(uniqueDominatingNode + " immediately dominates " + n);
-      if (uniqueDominatingNode != null) {
-        graph.addEdge(uniqueDominatingNode, n);
+    // dominates n. That is exactly the parent of n in the dominator tree. The start
+    // node and nodes unreachable from it do not have an immediate dominator.
+    DominatorTree dominatorTree = dominance.getDominatorTree();
+    for (int n : cfg.vertexSet()) {
+      Integer immediateDominator = dominatorTree.getImmediateDominator(n);
+      if (immediateDominator != null) {
+        graph.addEdge(immediateDominator, n);
       }
     }
     return graph;
@@ -6,9 +6,7 @@ import de.uniks.vs.methodresourceprediction.slicer.ControlFlow;
 import de.uniks.vs.methodresourceprediction.slicer.SlicerGraph;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
@@ -33,53 +31,18 @@ public class ImmediatePostDominance extends SlicerGraph<Integer> {
 
     // Every vertex in the control flow is present in the forward dominance graph
     // as well.
-    Graph<Integer, DefaultEdge> strictPostDominanceGraph = strictPostDominance.getGraph();
-    strictPostDominanceGraph.vertexSet().forEach(v -> graph.addVertex(v));
+    PostDominance postDominance = strictPostDominance.getPostDominance();
+    Graph<Integer, DefaultEdge> cfg = postDominance.getControlFlowGraph();
+    cfg.vertexSet().forEach(v -> graph.addVertex(v));
 
-    // The immediate dominator or idom of a node n is the unique node that strictly
-    // dominates n but does not strictly dominate any other node that strictly
-    // dominates n
-    for (int n : strictPostDominanceGraph.vertexSet()) {
-      // Find all nodes that strictly dominate n
-      final Set<DefaultEdge> strictlyPostDominatingEdgesOfN =
-          strictPostDominanceGraph.incomingEdgesOf(n);
-      final Set<Integer> strictlyPostDominatingNodesOfN = new HashSet<>();
-      for (DefaultEdge strictlyPostDominatingEdgeOfN : strictlyPostDominatingEdgesOfN) {
-        strictlyPostDominatingNodesOfN.add(
-            strictPostDominanceGraph.getEdgeSource(strictlyPostDominatingEdgeOfN));
-      }
-
-      // ... but does not strictly dominate any other node that strictly dominates n
-      Integer uniquePostDominatingNode = null;
-      for (int strictlyPostDominatingNodeOfN : strictlyPostDominatingNodesOfN) {
-        boolean postDominatesOtherNodeThatDominatesN = false;
-        for (int strictlyDominatingNodeOfN2 : strictlyPostDominatingNodesOfN) {
-          if (strictPostDominanceGraph.containsEdge(
-              strictlyPostDominatingNodeOfN, strictlyDominatingNodeOfN2)) {
-            postDominatesOtherNodeThatDominatesN = true;
-            break; // optimization
-          }
-        }
-
-        if (!postDominatesOtherNodeThatDominatesN) {
-          if (uniquePostDominatingNode == null) {
-            uniquePostDominatingNode = strictlyPostDominatingNodeOfN;
-          } else {
-            // Not possible
-            throw new RuntimeException();
-          }
-        }
-      }
-
-      if (uniquePostDominatingNode == null
-          && !strictPostDominanceGraph.incomingEdgesOf(n).isEmpty()) {
-        // Not possible
-        throw new RuntimeException(
-            "Starting node " + n + " has a dominating node which is not possible");
-      }
-      //			System.out.println(uniqueDominatingNode + " immediately dominates " + n);
-      if (uniquePostDominatingNode != null) {
-        graph.addEdge(uniquePostDominatingNode, n);
+    // The immediate post-dominator of a node n is the parent of n in the post-dominator
+    // tree. END nodes (children of the virtual exit) and nodes which cannot reach any END
+    // node do not have an immediate post-dominator.
+    DominatorTree postDominatorTree = postDominance.getPostDominatorTree();
+    for (int n : cfg.vertexSet()) {
+      Integer immediatePostDominator = postDominatorTree.getImmediateDominator(n);
+      if (immediatePostDominator != null) {
+        graph.addEdge(immediatePostDominator, n);
       }
     }
     return graph;
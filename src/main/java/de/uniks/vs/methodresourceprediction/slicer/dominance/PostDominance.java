@@ -5,14 +5,12 @@ import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import de.uniks.vs.methodresourceprediction.slicer.ControlFlow;
 import de.uniks.vs.methodresourceprediction.slicer.SlicerGraph;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.AllDirectedPaths;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.EdgeReversedGraph;
 import org.jgrapht.io.ComponentNameProvider;
 import org.jgrapht.io.ExportException;
 
@@ -21,6 +19,7 @@ public class PostDominance extends SlicerGraph<Integer> {
   private Graph<Integer, DefaultEdge> controlFlowGraph;
 
   private Graph<Integer, DefaultEdge> graph;
+  private DominatorTree postDominatorTree;
   private int startIndex;
 
   public PostDominance(ControlFlow controlFlow, int startIndex)
@@ -35,6 +34,27 @@ public class PostDominance extends SlicerGraph<Integer> {
     this.startIndex = startIndex;
   }
 
+  public DominatorTree getPostDominatorTree() {
+    if (postDominatorTree != null) {
+      return postDominatorTree;
+    }
+    // Get END/Exit nodes
+    Set<Integer> endNodes = new LinkedHashSet<>();
+    controlFlowGraph
+        .vertexSet()
+        .forEach(
+            v -> {
+              if (controlFlowGraph.outDegreeOf(v) == 0) {
+                endNodes.add(v);
+              }
+            });
+
+    // Post-dominators are the dominators of the reversed control flow, starting at
+    // a virtual exit node which joins all END nodes
+    postDominatorTree = new DominatorTree(new EdgeReversedGraph<>(controlFlowGraph), endNodes);
+    return postDominatorTree;
+  }
+
   @Override
   public Graph<Integer, DefaultEdge> getGraph() throws IOException, InvalidClassFileException {
     if (graph != null) {
@@ -47,30 +67,21 @@ public class PostDominance extends SlicerGraph<Integer> {
     Graph<Integer, DefaultEdge> cfg = controlFlowGraph;
     cfg.vertexSet().forEach(v -> graph.addVertex(v));
 
-    // Get END/Exit nodes
-    Set<Integer> endNodes = new HashSet<>();
-    cfg.vertexSet()
-        .forEach(
-            v -> {
-              if (cfg.outDegreeOf(v) == 0) {
-                endNodes.add(v);
-              }
-            });
-
     // http://infolab.stanford.edu/~ullman/dragon/w06/lectures/cs243-lec08-wei.pdf
     // If X appears on every path from Y to END, then X post-dominates Y.
-
-    AllDirectedPaths<Integer, DefaultEdge> cfgPaths = new AllDirectedPaths<>(cfg);
+    // The post-dominators of Y are Y and all of its ancestors in the post-dominator
+    // tree (excluding the virtual exit).
+    DominatorTree postDominatorTree = getPostDominatorTree();
     for (int y : cfg.vertexSet()) {
-      final List<GraphPath<Integer, DefaultEdge>> cfgPathFromYToEnd =
-          cfgPaths.getAllPaths(Set.of(y), endNodes, true, cfg.vertexSet().size());
-
-      Set<Integer> Xs = new HashSet<>(cfg.vertexSet());
-      for (GraphPath<Integer, DefaultEdge> gp : cfgPathFromYToEnd) {
-        Xs.retainAll(gp.getVertexList());
+      if (!postDominatorTree.isReachable(y)) {
+        // There is no path from Y to END, so every X appears on all (zero) paths
+        for (int x : cfg.vertexSet()) {
+          graph.addEdge(x, y);
+        }
+        continue;
       }
 
-      for (int x : Xs) {
+      for (int x : postDominatorTree.getDominators(y)) {
         // x post-dominates y
         graph.addEdge(x, y);
       }
@@ -0,0 +1,116 @@
+package de.uniks.vs.methodresourceprediction.slicer.loop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class Loop {
+  private final int id;
+  private final Loop parent;
+  private final List<Loop> children;
+
+  private final SortedSet<Integer> instructions;
+  private final Set<Integer> headers;
+  private final Set<Integer> latches;
+  private final Set<Integer> exits;
+
+  Loop(
+      int id,
+      Loop parent,
+      SortedSet<Integer> instructions,
+      Set<Integer> headers,
+      Set<Integer> latches,
+      Set<Integer> exits) {
+    this.id = id;
+    this.parent = parent;
+    this.children = new ArrayList<>();
+    this.instructions = Collections.unmodifiableSortedSet(new TreeSet<>(instructions));
+    this.headers = Collections.unmodifiableSet(headers);
+    this.latches = Collections.unmodifiableSet(latches);
+    this.exits = Collections.unmodifiableSet(exits);
+    if (parent != null) {
+      parent.children.add(this);
+    }
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  /** Returns the enclosing loop or {@code null} for a top level loop. */
+  public Loop getParent() {
+    return parent;
+  }
+
+  public List<Loop> getChildren() {
+    return Collections.unmodifiableList(children);
+  }
+
+  public int getDepth() {
+    int depth = 1;
+    for (Loop loop = parent; loop != null; loop = loop.parent) {
+      depth++;
+    }
+    return depth;
+  }
+
+  /** Returns all instructions of the loop, including the ones of nested loops. */
+  public SortedSet<Integer> getInstructions() {
+    return instructions;
+  }
+
+  public boolean contains(int instructionIndex) {
+    return instructions.contains(instructionIndex);
+  }
+
+  /**
+   * Returns the header of the loop. For reducible loops, this is the only instruction the loop can
+   * be entered at. Irreducible loops have more than one entry, the lowest one is returned here.
+   */
+  public int getHeader() {
+    return headers.iterator().next();
+  }
+
+  public Set<Integer> getHeaders() {
+    return headers;
+  }
+
+  public boolean isReducible() {
+    return headers.size() == 1;
+  }
+
+  /** Returns the instructions inside the loop with a back edge to a header. */
+  public Set<Integer> getLatches() {
+    return latches;
+  }
+
+  /** Returns the instructions outside the loop which are targets of edges leaving it. */
+  public Set<Integer> getExits() {
+    return exits;
+  }
+
+  public int getLowestIndex() {
+    return instructions.first();
+  }
+
+  public int getHighestIndex() {
+    return instructions.last();
+  }
+
+  @Override
+  public String toString() {
+    return "Loop "
+        + id
+        + " (headers: "
+        + headers
+        + ", latches: "
+        + latches
+        + ", exits: "
+        + exits
+        + "): "
+        + instructions;
+  }
+}
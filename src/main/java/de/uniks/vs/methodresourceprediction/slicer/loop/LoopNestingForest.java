@@ -0,0 +1,320 @@
+package de.uniks.vs.methodresourceprediction.slicer.loop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+// Loop nesting forest based on strongly connected components (see Ramalingam, "On Loops,
+// Dominators, and Dominance Frontiers"). Every non-trivial SCC of the control flow graph is a loop.
+// Its headers are the instructions entered from outside of the SCC. Nested loops are the
+// non-trivial SCCs of the loop body once the edges into the headers (back edges) are removed.
+// In contrast to enumerating all simple cycles, this is polynomial in the graph size.
+public class LoopNestingForest {
+  private final Graph<Integer, DefaultEdge> graph;
+
+  // Dense numbering of the graph vertices
+  private int[] vertices;
+  private Map<Integer, Integer> vertexNumbers;
+  private int[][] successors;
+  private int[][] predecessors;
+
+  private List<Loop> loops;
+  private List<Loop> topLevelLoops;
+  private Loop[] innermostLoops;
+
+  // Membership index by instruction index: id of the innermost loop (-1 if there is none) and
+  // all instructions which are part of any loop
+  private int[] innermostLoopIds;
+  private BitSet instructionsInLoops;
+
+  // Scratch space while searching loops: the current region, ignored edge targets inside
+  // of it and the current component
+  private boolean[] inRegion;
+  private boolean[] ignoredTarget;
+  private boolean[] inComponent;
+
+  public LoopNestingForest(Graph<Integer, DefaultEdge> graph) {
+    this.graph = graph;
+
+    computeAdjacency();
+    computeLoops();
+    computeMembershipIndex();
+  }
+
+  private void computeAdjacency() {
+    vertices = graph.vertexSet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    vertexNumbers = new HashMap<>();
+    for (int number = 0; number < vertices.length; number++) {
+      vertexNumbers.put(vertices[number], number);
+    }
+
+    successors = new int[vertices.length][];
+    predecessors = new int[vertices.length][];
+    for (int number = 0; number < vertices.length; number++) {
+      successors[number] =
+          graph.outgoingEdgesOf(vertices[number]).stream()
+              .mapToInt(edge -> vertexNumbers.get(graph.getEdgeTarget(edge)))
+              .toArray();
+      predecessors[number] =
+          graph.incomingEdgesOf(vertices[number]).stream()
+              .mapToInt(edge -> vertexNumbers.get(graph.getEdgeSource(edge)))
+              .toArray();
+    }
+  }
+
+  private void computeLoops() {
+    loops = new ArrayList<>();
+    topLevelLoops = new ArrayList<>();
+    innermostLoops = new Loop[vertices.length];
+
+    // Search loops in the whole graph first and then in the body of every loop found
+    inRegion = new boolean[vertices.length];
+    ignoredTarget = new boolean[vertices.length];
+    inComponent = new boolean[vertices.length];
+    Deque<Loop> worklist = new ArrayDeque<>();
+    int[] allVertices = new int[vertices.length];
+    for (int number = 0; number < vertices.length; number++) {
+      allVertices[number] = number;
+    }
+    worklist.addAll(findLoops(allVertices, null));
+    while (!worklist.isEmpty()) {
+      Loop loop = worklist.poll();
+      int[] body =
+          loop.getInstructions().stream().mapToInt(vertexNumbers::get).toArray();
+      worklist.addAll(findLoops(body, loop));
+    }
+  }
+
+  private void computeMembershipIndex() {
+    int maxInstructionIndex = vertices.length > 0 ? vertices[vertices.length - 1] : -1;
+    innermostLoopIds = new int[maxInstructionIndex + 1];
+    Arrays.fill(innermostLoopIds, -1);
+    instructionsInLoops = new BitSet(maxInstructionIndex + 1);
+    for (int number = 0; number < vertices.length; number++) {
+      if (innermostLoops[number] != null) {
+        innermostLoopIds[vertices[number]] = innermostLoops[number].getId();
+        instructionsInLoops.set(vertices[number]);
+      }
+    }
+  }
+
+  private List<Loop> findLoops(int[] region, Loop parent) {
+    for (int node : region) {
+      inRegion[node] = true;
+    }
+    // Inside of a loop body, edges into the loop headers are ignored
+    if (parent != null) {
+      for (int header : parent.getHeaders()) {
+        ignoredTarget[vertexNumbers.get(header)] = true;
+      }
+    }
+
+    List<Loop> regionLoops = new ArrayList<>();
+    List<int[]> components = findComponents(region);
+    components.sort(Comparator.comparingInt(component -> component[0]));
+    for (int[] component : components) {
+      if (!isLoop(component)) {
+        continue;
+      }
+      for (int node : component) {
+        inComponent[node] = true;
+      }
+      Loop loop = createLoop(component, parent);
+      for (int node : component) {
+        inComponent[node] = false;
+        innermostLoops[node] = loop;
+      }
+      regionLoops.add(loop);
+    }
+
+    for (int node : region) {
+      inRegion[node] = false;
+      ignoredTarget[node] = false;
+    }
+    return regionLoops;
+  }
+
+  private boolean isLoop(int[] component) {
+    if (component.length > 1) {
+      return true;
+    }
+    // A single node is a loop if it jumps to itself
+    int node = component[0];
+    if (ignoredTarget[node]) {
+      return false;
+    }
+    for (int successor : successors[node]) {
+      if (successor == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Loop createLoop(int[] component, Loop parent) {
+    SortedSet<Integer> instructions = new TreeSet<>();
+    SortedSet<Integer> headers = new TreeSet<>();
+    SortedSet<Integer> exits = new TreeSet<>();
+    for (int node : component) {
+      instructions.add(vertices[node]);
+      for (int predecessor : predecessors[node]) {
+        if (!inComponent[predecessor]) {
+          headers.add(vertices[node]);
+        }
+      }
+      for (int successor : successors[node]) {
+        if (!inComponent[successor]) {
+          exits.add(vertices[successor]);
+        }
+      }
+    }
+    if (headers.isEmpty()) {
+      // The loop cannot be entered at all (dead code), pick the lowest instruction
+      headers.add(instructions.first());
+    }
+
+    SortedSet<Integer> latches = new TreeSet<>();
+    for (int node : component) {
+      for (int successor : successors[node]) {
+        if (headers.contains(vertices[successor])) {
+          latches.add(vertices[node]);
+        }
+      }
+    }
+
+    Loop loop = new Loop(loops.size(), parent, instructions, headers, latches, exits);
+    loops.add(loop);
+    if (parent == null) {
+      topLevelLoops.add(loop);
+    }
+    return loop;
+  }
+
+  // Iterative version of Tarjan's strongly connected components algorithm restricted to the
+  // nodes of a region. Components are returned with sorted nodes.
+  private List<int[]> findComponents(int[] region) {
+    List<int[]> components = new ArrayList<>();
+
+    Map<Integer, Integer> indexes = new HashMap<>();
+    Map<Integer, Integer> lowLinks = new HashMap<>();
+    Deque<Integer> componentStack = new ArrayDeque<>();
+    Set<Integer> onComponentStack = new HashSet<>();
+
+    Deque<int[]> callStack = new ArrayDeque<>(); // (node, next successor position)
+    int index = 0;
+    for (int root : region) {
+      if (indexes.containsKey(root)) {
+        continue;
+      }
+      callStack.push(new int[] {root, 0});
+      indexes.put(root, index);
+      lowLinks.put(root, index);
+      index++;
+      componentStack.push(root);
+      onComponentStack.add(root);
+
+      while (!callStack.isEmpty()) {
+        int[] frame = callStack.peek();
+        int node = frame[0];
+        if (frame[1] < successors[node].length) {
+          int successor = successors[node][frame[1]++];
+          if (!inRegion[successor] || ignoredTarget[successor]) {
+            continue;
+          }
+          if (!indexes.containsKey(successor)) {
+            callStack.push(new int[] {successor, 0});
+            indexes.put(successor, index);
+            lowLinks.put(successor, index);
+            index++;
+            componentStack.push(successor);
+            onComponentStack.add(successor);
+          } else if (onComponentStack.contains(successor)) {
+            lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(successor)));
+          }
+          continue;
+        }
+
+        callStack.pop();
+        if (!callStack.isEmpty()) {
+          int caller = callStack.peek()[0];
+          lowLinks.put(caller, Math.min(lowLinks.get(caller), lowLinks.get(node)));
+        }
+        if (lowLinks.get(node).equals(indexes.get(node))) {
+          List<Integer> component = new ArrayList<>();
+          int member;
+          do {
+            member = componentStack.pop();
+            onComponentStack.remove(member);
+            component.add(member);
+          } while (member != node);
+          int[] componentArray = component.stream().mapToInt(Integer::intValue).toArray();
+          Arrays.sort(componentArray);
+          components.add(componentArray);
+        }
+      }
+    }
+    return components;
+  }
+
+  public List<Loop> getLoops() {
+    return Collections.unmodifiableList(loops);
+  }
+
+  public List<Loop> getTopLevelLoops() {
+    return Collections.unmodifiableList(topLevelLoops);
+  }
+
+  /** Returns the innermost loop containing the instruction or {@code null} if there is none. */
+  public Loop getInnermostLoop(int instructionIndex) {
+    int loopId = getInnermostLoopId(instructionIndex);
+    return loopId != -1 ? loops.get(loopId) : null;
+  }
+
+  /** Returns the id of the innermost loop containing the instruction or -1 if there is none. */
+  public int getInnermostLoopId(int instructionIndex) {
+    if (instructionIndex < 0 || instructionIndex >= innermostLoopIds.length) {
+      return -1;
+    }
+    return innermostLoopIds[instructionIndex];
+  }
+
+  /** Returns all loops containing the instruction, starting with the innermost one. */
+  public List<Loop> getLoopsForInstruction(int instructionIndex) {
+    List<Loop> loopsForInstruction = new ArrayList<>();
+    for (Loop loop = getInnermostLoop(instructionIndex); loop != null; loop = loop.getParent()) {
+      loopsForInstruction.add(loop);
+    }
+    return loopsForInstruction;
+  }
+
+  public boolean isInLoop(int instructionIndex) {
+    return instructionIndex >= 0 && instructionsInLoops.get(instructionIndex);
+  }
+
+  /** Returns a copy of the set of instructions which are part of any loop. */
+  public BitSet getInstructionsInLoops() {
+    return (BitSet) instructionsInLoops.clone();
+  }
+
+  /** Checks if both instructions are part of exactly the same (nested) loops. */
+  public boolean inSameLoop(int instructionIndexA, int instructionIndexB) {
+    return getInnermostLoopId(instructionIndexA) == getInnermostLoopId(instructionIndexB);
+  }
+
+  public Graph<Integer, DefaultEdge> getGraph() {
+    return graph;
+  }
+}
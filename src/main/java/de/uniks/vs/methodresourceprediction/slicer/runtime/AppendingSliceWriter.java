@@ -0,0 +1,186 @@
+package de.uniks.vs.methodresourceprediction.slicer.runtime;
+
+import de.uniks.vs.methodresourceprediction.slicer.export.Feature;
+import de.uniks.vs.methodresourceprediction.slicer.export.IFeatureLoggerExecution;
+import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter;
+import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter.ExportFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+// Result sink of instrumented programs. SliceWriter serializes all executions of the FeatureLogger
+// again whenever the sliced method returns, this writer only appends the execution that has just
+// finished. Writing the results is therefore linear in the number of executions. The files have
+// the format of SliceWriter. Like the files of SliceWriter, a file is complete after every return
+// of the sliced method: each execution is written with a single write, XML files followed by their
+// closing tags, which the next execution overwrites. So the results survive a killed program and
+// can be read while it runs. The written execution is handed back to its FeatureTable, so the
+// memory used by the logged features does not grow with the run time of the program.
+public class AppendingSliceWriter {
+  private static final String XML_PREFIX = "app";
+  private static final Map<String, AppendingSliceWriter> WRITERS = new HashMap<>();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(AppendingSliceWriter::closeAll));
+  }
+
+  private static final byte[] XML_CLOSING_TAGS =
+      ("  </" + XML_PREFIX + ":Executions>\n" + "</" + XML_PREFIX + ":Slicer>\n")
+          .getBytes(StandardCharsets.UTF_8);
+
+  private final ExportFormat exportFormat;
+  private final FileChannel channel;
+  // End of the written executions, the XML closing tags follow it
+  private long position = 0;
+  private boolean headerWritten = false;
+
+  private AppendingSliceWriter(String path, ExportFormat exportFormat) throws IOException {
+    this.exportFormat = exportFormat;
+    // Truncate the results of a previous run
+    this.channel =
+        FileChannel.open(
+            Paths.get(path),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  public static synchronized void appendCSV(String path, IFeatureLoggerExecution execution)
+      throws IOException {
+    getWriter(path, ExportFormat.CSV).append(execution);
+  }
+
+  public static synchronized void appendXML(String path, IFeatureLoggerExecution execution)
+      throws IOException {
+    getWriter(path, ExportFormat.XML).append(execution);
+  }
+
+  /** Closes all result files. Called automatically when the program exits. */
+  public static synchronized void closeAll() {
+    for (AppendingSliceWriter sliceWriter : WRITERS.values()) {
+      try {
+        sliceWriter.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    WRITERS.clear();
+  }
+
+  private static AppendingSliceWriter getWriter(String path, ExportFormat exportFormat)
+      throws IOException {
+    AppendingSliceWriter sliceWriter = WRITERS.get(path);
+    if (sliceWriter != null) {
+      return sliceWriter;
+    }
+    sliceWriter = new AppendingSliceWriter(path, exportFormat);
+    WRITERS.put(path, sliceWriter);
+    return sliceWriter;
+  }
+
+  private void append(IFeatureLoggerExecution execution) throws IOException {
+    StringBuilder text = new StringBuilder();
+    if (exportFormat == ExportFormat.CSV) {
+      appendCSV(text, execution);
+    } else {
+      appendXML(text, execution);
+    }
+    byte[] executionBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] closingBytes = exportFormat == ExportFormat.XML ? XML_CLOSING_TAGS : new byte[0];
+    ByteBuffer buffer = ByteBuffer.allocate(executionBytes.length + closingBytes.length);
+    buffer.put(executionBytes).put(closingBytes).flip();
+    long writePosition = position;
+    while (buffer.hasRemaining()) {
+      writePosition += channel.write(buffer, writePosition);
+    }
+    position += executionBytes.length;
+
+    // The execution is written, the instrumented method can reuse it
+    if (execution instanceof FeatureExecution) {
+      ((FeatureExecution) execution).release();
+    }
+  }
+
+  private void appendCSV(StringBuilder text, IFeatureLoggerExecution execution) {
+    if (!headerWritten) {
+      text.append(String.join(",", "execution_count", "instruction_index", "value") + "\n");
+      headerWritten = true;
+    }
+
+    Base64.Encoder encoder = Base64.getEncoder();
+    String executionCount =
+        encoder.encodeToString(String.valueOf(execution.getExecutionCount()).getBytes());
+    for (Feature feature : execution.getFeatures()) {
+      text.append(executionCount);
+      text.append(',');
+      text.append(
+          encoder.encodeToString(String.valueOf(feature.getInstructionIndex()).getBytes()));
+      text.append(',');
+      text.append(encoder.encodeToString(String.valueOf(feature.getValue()).getBytes()));
+      text.append('\n');
+    }
+  }
+
+  private void appendXML(StringBuilder text, IFeatureLoggerExecution execution) {
+    long duration = execution.getTimeEnd() - execution.getTimeStart();
+    if (!headerWritten) {
+      // Like SliceWriter, the duration of the first execution is the one of the document
+      text.append("<?xml version=\"1.0\"?>\n\n");
+      text.append(
+          "<"
+              + XML_PREFIX
+              + ":Slicer xmlns:"
+              + XML_PREFIX
+              + "=\""
+              + SliceWriter.XML_NAMESPACE
+              + "\" durationMS=\""
+              + duration
+              + "\">\n");
+      text.append("  <" + XML_PREFIX + ":Executions>\n");
+      headerWritten = true;
+    }
+
+    text.append(
+        "    <"
+            + XML_PREFIX
+            + ":Execution executionCount=\""
+            + execution.getExecutionCount()
+            + "\" startMS=\""
+            + execution.getTimeStart()
+            + "\" endMS=\""
+            + execution.getTimeEnd()
+            + "\" durationMS=\""
+            + duration
+            + "\">\n");
+    text.append("      <" + XML_PREFIX + ":Features>\n");
+    for (Feature feature : execution.getFeatures()) {
+      text.append(
+          "        <"
+              + XML_PREFIX
+              + ":Feature instructionIndex=\""
+              + feature.getInstructionIndex()
+              + "\">\n");
+      text.append(
+          "          <"
+              + XML_PREFIX
+              + ":Value>"
+              + feature.getValue()
+              + "</"
+              + XML_PREFIX
+              + ":Value>\n");
+      text.append("        </" + XML_PREFIX + ":Feature>\n");
+    }
+    text.append("      </" + XML_PREFIX + ":Features>\n");
+    text.append("    </" + XML_PREFIX + ":Execution>\n");
+  }
+
+  private void close() throws IOException {
+    channel.close();
+  }
+}
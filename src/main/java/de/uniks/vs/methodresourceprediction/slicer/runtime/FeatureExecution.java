@@ -0,0 +1,209 @@
+package de.uniks.vs.methodresourceprediction.slicer.runtime;
+
+import de.uniks.vs.methodresourceprediction.slicer.export.Feature;
+import de.uniks.vs.methodresourceprediction.slicer.export.IFeatureLoggerExecution;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Execution of a sliced method as logged by instrumented code. The instrumenter numbers the
+// features of a method densely (the slot of a feature is the position of its instruction index in
+// the sorted instruction indexes), so the values are kept in an array and whether a value was
+// logged in a bitmask. Instrumented code logs by slot, there is a logSlot method for every primitive
+// type, so logging a feature is an array store and does not box the value. Executions are taken
+// from the FeatureTable of the method. Like with the FeatureLogger, the execution created last can
+// be read in-process, it is not reused before another execution has been created.
+public class FeatureExecution implements IFeatureLoggerExecution {
+  private static final AtomicInteger EXECUTION_COUNTER = new AtomicInteger();
+  private static final Object LAST_EXECUTION_LOCK = new Object();
+  private static FeatureExecution lastExecution;
+
+  private final FeatureTable featureTable;
+  private final double[] values;
+  private final long[] loggedSlots;
+  private int executionCount;
+  private long timeStart;
+  private long timeEnd;
+  private boolean released = false;
+
+  FeatureExecution(FeatureTable featureTable) {
+    this.featureTable = featureTable;
+    this.values = new double[featureTable.getFeatureCount()];
+    this.loggedSlots = new long[(values.length + Long.SIZE - 1) / Long.SIZE];
+    this.executionCount = EXECUTION_COUNTER.getAndIncrement();
+  }
+
+  // Prepares a released execution for another invocation
+  void reset() {
+    Arrays.fill(loggedSlots, 0L);
+    executionCount = EXECUTION_COUNTER.getAndIncrement();
+    timeStart = 0;
+    timeEnd = 0;
+    released = false;
+  }
+
+  /** Returns the execution created last by an instrumented method or null if there is none. */
+  public static FeatureExecution getLastExecution() {
+    synchronized (LAST_EXECUTION_LOCK) {
+      return lastExecution;
+    }
+  }
+
+  // Makes a new execution the last one, the previous one is reused if it has been released
+  static void setLastExecution(FeatureExecution execution) {
+    FeatureExecution previousExecution;
+    synchronized (LAST_EXECUTION_LOCK) {
+      previousExecution = lastExecution;
+      lastExecution = execution;
+      if (previousExecution == null || !previousExecution.released) {
+        return;
+      }
+    }
+    previousExecution.featureTable.release(previousExecution);
+  }
+
+  /**
+   * Hands the execution back to its FeatureTable for reuse. The execution must not be used
+   * afterwards. The last execution is reused only after another execution has been created.
+   */
+  public void release() {
+    synchronized (LAST_EXECUTION_LOCK) {
+      released = true;
+      if (this == lastExecution) {
+        return;
+      }
+    }
+    featureTable.release(this);
+  }
+
+  public void logSlot(int slot, int value, boolean allowOverwrite) {
+    logSlot(slot, (double) value, allowOverwrite);
+  }
+
+  public void logSlot(int slot, long value, boolean allowOverwrite) {
+    logSlot(slot, (double) value, allowOverwrite);
+  }
+
+  public void logSlot(int slot, float value, boolean allowOverwrite) {
+    logSlot(slot, (double) value, allowOverwrite);
+  }
+
+  public void logSlot(int slot, boolean value, boolean allowOverwrite) {
+    logSlot(slot, value ? 1d : 0d, allowOverwrite);
+  }
+
+  public void logSlot(int slot, double value, boolean allowOverwrite) {
+    if (!allowOverwrite && isLogged(slot)) {
+      throw new UnsupportedOperationException(
+          "Feature with index " + featureTable.getInstructionIndex(slot) + " was already logged");
+    }
+    values[slot] = value;
+    loggedSlots[slot / Long.SIZE] |= 1L << slot;
+  }
+
+  /**
+   * Logs a reference. Boxed primitives are logged with their value, arrays, strings, collections
+   * and maps with their length. Other references and null are not logged.
+   */
+  public void logSlot(int slot, Object value, boolean allowOverwrite) {
+    Double convertedValue = convert(value);
+    if (convertedValue != null) {
+      logSlot(slot, convertedValue.doubleValue(), allowOverwrite);
+    }
+  }
+
+  /** Logs the value of the feature with the given instruction index. */
+  @Override
+  public void log(int instructionIndex, Object value) {
+    log(instructionIndex, value, false);
+  }
+
+  /** Logs the value of the feature with the given instruction index. */
+  @Override
+  public void log(int instructionIndex, Object value, boolean allowOverwrite) {
+    int slot = featureTable.getSlot(instructionIndex);
+    if (slot < 0) {
+      throw new UnsupportedOperationException(
+          "Feature with index " + instructionIndex + " was not initialized");
+    }
+    logSlot(slot, value, allowOverwrite);
+  }
+
+  @Override
+  public List<Feature> getFeatures() {
+    List<Feature> features = new ArrayList<>(values.length);
+    for (int slot = 0; slot < values.length; slot++) {
+      Double value = null;
+      if (isLogged(slot)) {
+        value = values[slot];
+      } else if (featureTable.hasDefaultValue(slot)) {
+        value = featureTable.getDefaultValue(slot);
+      }
+      features.add(new Feature(featureTable.getInstructionIndex(slot), value));
+    }
+    return features;
+  }
+
+  /** Returns the logged value of the feature with the given instruction index. */
+  @Override
+  public Double getFeatureValue(int instructionIndex) {
+    int slot = featureTable.getSlot(instructionIndex);
+    if (slot < 0 || !isLogged(slot)) {
+      return null;
+    }
+    return values[slot];
+  }
+
+  @Override
+  public void end(long timeStart, long timeEnd) {
+    this.timeStart = timeStart;
+    this.timeEnd = timeEnd;
+  }
+
+  @Override
+  public long getTimeEnd() {
+    return timeEnd;
+  }
+
+  @Override
+  public long getTimeStart() {
+    return timeStart;
+  }
+
+  @Override
+  public int getExecutionCount() {
+    return executionCount;
+  }
+
+  @Override
+  public String toString() {
+    return FeatureExecution.class.getSimpleName() + " [count:" + executionCount + "]";
+  }
+
+  private boolean isLogged(int slot) {
+    return (loggedSlots[slot / Long.SIZE] & (1L << slot)) != 0;
+  }
+
+  static Double convert(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value instanceof Boolean) {
+      return ((Boolean) value) ? 1d : 0d;
+    } else if (value instanceof Character) {
+      return (double) (Character) value;
+    } else if (value instanceof CharSequence) {
+      return (double) ((CharSequence) value).length();
+    } else if (value instanceof Collection) {
+      return (double) ((Collection<?>) value).size();
+    } else if (value instanceof Map) {
+      return (double) ((Map<?, ?>) value).size();
+    } else if (value != null && value.getClass().isArray()) {
+      return (double) Array.getLength(value);
+    }
+    return null;
+  }
+}
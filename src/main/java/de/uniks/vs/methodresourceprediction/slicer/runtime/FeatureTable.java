@@ -0,0 +1,98 @@
+package de.uniks.vs.methodresourceprediction.slicer.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Features of a sliced method: the instruction indexes by slot and their default values. The
+// instrumenter creates the table once in the static initializer of the class declaring the method,
+// so an invocation only takes an execution from the table. Executions that have been written to the
+// result file are handed back and reused.
+public class FeatureTable {
+  private final int[] instructionIndexes;
+  private final double[] defaultValues;
+  private final long[] defaultSlots;
+  private final List<FeatureExecution> releasedExecutions = new ArrayList<>();
+
+  private FeatureTable(int[] instructionIndexes) {
+    this.instructionIndexes = instructionIndexes;
+    this.defaultValues = new double[instructionIndexes.length];
+    this.defaultSlots = new long[(instructionIndexes.length + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  /**
+   * Creates the table of a sliced method.
+   *
+   * @param instructionIndexes the sorted instruction indexes of the features, the slot of a feature
+   *     is the position of its instruction index
+   */
+  public static FeatureTable create(int[] instructionIndexes) {
+    return new FeatureTable(instructionIndexes);
+  }
+
+  public void setDefaultValue(int slot, int value) {
+    setDefaultValue(slot, (double) value);
+  }
+
+  public void setDefaultValue(int slot, long value) {
+    setDefaultValue(slot, (double) value);
+  }
+
+  public void setDefaultValue(int slot, float value) {
+    setDefaultValue(slot, (double) value);
+  }
+
+  public void setDefaultValue(int slot, double value) {
+    defaultValues[slot] = value;
+    defaultSlots[slot / Long.SIZE] |= 1L << slot;
+  }
+
+  public void setDefaultValue(int slot, Object value) {
+    Double convertedValue = FeatureExecution.convert(value);
+    if (convertedValue != null) {
+      setDefaultValue(slot, convertedValue.doubleValue());
+    }
+  }
+
+  /** Returns an execution for an invocation of the method, a released one if there is any. */
+  public FeatureExecution createExecution() {
+    FeatureExecution execution = null;
+    synchronized (this) {
+      int releasedCount = releasedExecutions.size();
+      if (releasedCount > 0) {
+        execution = releasedExecutions.remove(releasedCount - 1);
+      }
+    }
+    if (execution == null) {
+      execution = new FeatureExecution(this);
+    } else {
+      execution.reset();
+    }
+    FeatureExecution.setLastExecution(execution);
+    return execution;
+  }
+
+  synchronized void release(FeatureExecution execution) {
+    releasedExecutions.add(execution);
+  }
+
+  int getFeatureCount() {
+    return instructionIndexes.length;
+  }
+
+  int getInstructionIndex(int slot) {
+    return instructionIndexes[slot];
+  }
+
+  int getSlot(int instructionIndex) {
+    return Arrays.binarySearch(instructionIndexes, instructionIndex);
+  }
+
+  boolean hasDefaultValue(int slot) {
+    return (defaultSlots[slot / Long.SIZE] & (1L << slot)) != 0;
+  }
+
+  double getDefaultValue(int slot) {
+    return defaultValues[slot];
+  }
+}
@@ -4,6 +4,7 @@ import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import de.uniks.vs.methodresourceprediction.slicer.ControlDependency;
 import de.uniks.vs.methodresourceprediction.slicer.SlicerGraph;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.Dominance;
+import de.uniks.vs.methodresourceprediction.slicer.dominance.DominatorTree;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.ImmediateDominance;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.ImmediatePostDominance;
 import de.uniks.vs.methodresourceprediction.slicer.dominance.PostDominance;
@@ -15,6 +16,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.IntStream;
 import org.jgrapht.Graph;
@@ -27,6 +29,7 @@ import org.jgrapht.io.ExportException;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DominanceTest {
@@ -778,6 +781,90 @@ public class DominanceTest {
     compareGraphs(controlDependency.getGraph(), expectedControlDependency);
   }
 
+  @Test
+  public void manySubsequentBranches() throws IOException, InvalidClassFileException {
+    // A chain of if-else diamonds. Enumerating all paths is exponential in the number of
+    // branches (2^40 paths to the last node here).
+    final int diamonds = 40;
+    Graph<Integer, DefaultEdge> cfg =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 3 * diamonds).forEach(i -> cfg.addVertex(i));
+    for (int diamond = 0; diamond < diamonds; diamond++) {
+      int branch = 3 * diamond;
+      cfg.addEdge(branch, branch + 1);
+      cfg.addEdge(branch, branch + 2);
+      cfg.addEdge(branch + 1, branch + 3);
+      cfg.addEdge(branch + 2, branch + 3);
+    }
+
+    Dominance dominance = new Dominance(cfg, 0);
+    ImmediateDominance immediateDominance =
+        new ImmediateDominance(new StrictDominance(dominance));
+
+    // Test ImmediateDominance
+    Graph<Integer, DefaultEdge> expectedImmediateDominance =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 3 * diamonds).forEach(i -> expectedImmediateDominance.addVertex(i));
+    for (int diamond = 0; diamond < diamonds; diamond++) {
+      int branch = 3 * diamond;
+      expectedImmediateDominance.addEdge(branch, branch + 1);
+      expectedImmediateDominance.addEdge(branch, branch + 2);
+      expectedImmediateDominance.addEdge(branch, branch + 3);
+    }
+    compareGraphs(immediateDominance.getGraph(), expectedImmediateDominance);
+
+    // Every branch node dominates the rest of the method, the cases do not
+    DominatorTree dominatorTree = dominance.getDominatorTree();
+    assertTrue(dominatorTree.dominates(0, 3 * diamonds));
+    assertTrue(dominatorTree.dominates(3, 3 * diamonds));
+    assertFalse(dominatorTree.dominates(1, 3));
+    assertFalse(dominatorTree.dominates(3 * diamonds, 0));
+    assertEquals(diamonds + 1, dominatorTree.getDominators(3 * diamonds).size());
+  }
+
+  @Test
+  public void manyExits() throws IOException, InvalidClassFileException {
+    // A chain of early returns, every branch leaves the method or continues with the next one
+    final int branches = 100;
+    Graph<Integer, DefaultEdge> cfg =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 3 * branches).forEach(i -> cfg.addVertex(i));
+    for (int branch = 0; branch < 3 * branches; branch += 3) {
+      cfg.addEdge(branch, branch + 1);
+      cfg.addEdge(branch, branch + 2);
+      cfg.addEdge(branch + 2, branch + 3);
+    }
+
+    PostDominance postDominance = new PostDominance(cfg, 0);
+    ImmediatePostDominance immediatePostDominance =
+        new ImmediatePostDominance(new StrictPostDominance(postDominance));
+
+    // Test ImmediatePostDominance (branch nodes and exits do not have one)
+    Graph<Integer, DefaultEdge> expectedImmediatePostDominance =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 3 * branches)
+        .forEach(i -> expectedImmediatePostDominance.addVertex(i));
+    for (int branch = 0; branch < 3 * branches; branch += 3) {
+      expectedImmediatePostDominance.addEdge(branch + 3, branch + 2);
+    }
+    compareGraphs(immediatePostDominance.getGraph(), expectedImmediatePostDominance);
+
+    DominatorTree postDominatorTree = postDominance.getPostDominatorTree();
+    assertTrue(postDominatorTree.dominates(3, 2));
+    assertFalse(postDominatorTree.dominates(3, 0));
+    assertEquals(List.of(0), postDominatorTree.getDominators(0));
+    assertEquals(List.of(1), postDominatorTree.getDominators(1));
+
+    // Everything after a branch is control dependent on it
+    ControlDependency controlDependency = new ControlDependency(cfg, immediatePostDominance);
+    assertEquals(
+        Set.of(ControlDependency.ROOT_INDEX), controlDependency.getControlDependencyInstructions(0));
+    for (int i = 1; i <= 3 * branches; i++) {
+      assertEquals(
+          Set.of(3 * ((i - 1) / 3)), controlDependency.getControlDependencyInstructions(i));
+    }
+  }
+
   private static void plot(SlicerGraph<Integer> slicerGraph)
       throws IOException, InterruptedException, InvalidClassFileException, ExportException {
     slicerGraph.writePlot(Path.of("/tmp/slicer"), slicerGraph.getClass().getSimpleName() + ".png");
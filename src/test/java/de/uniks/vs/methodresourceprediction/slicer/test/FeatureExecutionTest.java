@@ -0,0 +1,152 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import de.uniks.vs.methodresourceprediction.slicer.export.Feature;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.FeatureExecution;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.FeatureTable;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FeatureExecutionTest {
+  @Test
+  public void logPrimitives() {
+    FeatureExecution execution = createExecution(new int[] {1, 4, 7, 9, 12});
+    execution.logSlot(0, 3, false);
+    execution.logSlot(1, 5L, false);
+    execution.logSlot(2, 0.5f, false);
+    execution.logSlot(3, true, false);
+    execution.logSlot(4, 2.25d, false);
+
+    List<Feature> features = execution.getFeatures();
+    assertEquals(5, features.size());
+    assertEquals(3d, features.get(0).getValue(), 0d);
+    assertEquals(5d, features.get(1).getValue(), 0d);
+    assertEquals(0.5d, features.get(2).getValue(), 0d);
+    assertEquals(1d, features.get(3).getValue(), 0d);
+    assertEquals(2.25d, features.get(4).getValue(), 0d);
+    assertEquals(12, features.get(4).getInstructionIndex());
+    assertEquals(0.5d, execution.getFeatureValue(7), 0d);
+  }
+
+  @Test
+  public void logReferences() {
+    FeatureExecution execution = createExecution(new int[] {0, 1, 2, 3});
+    execution.logSlot(0, Integer.valueOf(42), false);
+    execution.logSlot(1, "abc", false);
+    execution.logSlot(2, new int[5], false);
+    execution.logSlot(3, new Object(), false);
+
+    assertEquals(42d, execution.getFeatureValue(0), 0d);
+    assertEquals(3d, execution.getFeatureValue(1), 0d);
+    assertEquals(5d, execution.getFeatureValue(2), 0d);
+    assertNull(execution.getFeatureValue(3));
+  }
+
+  @Test
+  public void logInstructionIndex() {
+    FeatureExecution execution = createExecution(new int[] {2, 5, 11});
+    execution.log(5, Integer.valueOf(42));
+    execution.log(11, "abc", false);
+
+    assertNull(execution.getFeatureValue(2));
+    assertEquals(42d, execution.getFeatureValue(5), 0d);
+    assertEquals(3d, execution.getFeatureValue(11), 0d);
+    assertEquals(42d, execution.getFeatures().get(1).getValue(), 0d);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void logUnknownInstructionIndex() {
+    FeatureExecution execution = createExecution(new int[] {2, 5});
+    execution.log(1, Integer.valueOf(42));
+  }
+
+  @Test
+  public void defaultValues() {
+    FeatureTable featureTable = FeatureTable.create(new int[] {2, 5, 6});
+    featureTable.setDefaultValue(0, 7);
+    featureTable.setDefaultValue(1, 1);
+    FeatureExecution execution = featureTable.createExecution();
+    execution.logSlot(1, 8, false);
+
+    List<Feature> features = execution.getFeatures();
+    assertNull(execution.getFeatureValue(2));
+    assertEquals(7d, features.get(0).getValue(), 0d);
+    assertEquals(8d, features.get(1).getValue(), 0d);
+    assertNull(features.get(2).getValue());
+  }
+
+  @Test
+  public void manySlots() {
+    int[] instructionIndexes = IntStream.range(0, 130).map(slot -> slot * 2).toArray();
+    FeatureExecution execution = createExecution(instructionIndexes);
+    execution.logSlot(64, 1, false);
+    execution.logSlot(129, 2, false);
+
+    assertNull(execution.getFeatureValue(0));
+    assertEquals(1d, execution.getFeatureValue(128), 0d);
+    assertEquals(2d, execution.getFeatureValue(258), 0d);
+    assertNull(execution.getFeatures().get(65).getValue());
+  }
+
+  @Test
+  public void overwrite() {
+    FeatureExecution execution = createExecution(new int[] {3});
+    execution.logSlot(0, 1, false);
+    execution.logSlot(0, 2, true);
+    assertEquals(2d, execution.getFeatureValue(3), 0d);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void overwriteNotAllowed() {
+    FeatureExecution execution = createExecution(new int[] {3});
+    execution.logSlot(0, 1, false);
+    execution.logSlot(0, 2, false);
+  }
+
+  @Test
+  public void reuseReleasedExecution() {
+    FeatureTable featureTable = FeatureTable.create(new int[] {4});
+    FeatureExecution first = featureTable.createExecution();
+    first.logSlot(0, 1, false);
+    first.release();
+
+    // The last execution is kept until another one has been created
+    FeatureExecution second = featureTable.createExecution();
+    assertNotSame(first, second);
+    second.release();
+    FeatureExecution third = featureTable.createExecution();
+    assertSame(first, third);
+    assertNull(third.getFeatureValue(4));
+    assertNotSame(second, third);
+  }
+
+  @Test
+  public void lastExecution() {
+    FeatureTable featureTable = FeatureTable.create(new int[] {4});
+    FeatureExecution first = featureTable.createExecution();
+    assertSame(first, FeatureExecution.getLastExecution());
+    first.logSlot(0, 1, false);
+    first.release();
+    assertSame(first, FeatureExecution.getLastExecution());
+    assertEquals(1d, FeatureExecution.getLastExecution().getFeatureValue(4), 0d);
+
+    FeatureExecution second = createExecution(new int[] {});
+    assertSame(second, FeatureExecution.getLastExecution());
+  }
+
+  @Test
+  public void executionCount() {
+    FeatureExecution first = createExecution(new int[] {});
+    FeatureExecution second = createExecution(new int[] {});
+    assertEquals(first.getExecutionCount() + 1, second.getExecutionCount());
+  }
+
+  private static FeatureExecution createExecution(int[] instructionIndexes) {
+    return FeatureTable.create(instructionIndexes).createExecution();
+  }
+}
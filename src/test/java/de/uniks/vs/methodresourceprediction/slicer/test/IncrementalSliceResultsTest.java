@@ -0,0 +1,99 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import de.uniks.vs.methodresourceprediction.slicer.IncrementalSliceResults;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class IncrementalSliceResultsTest {
+  private static final Set<Integer> INSTRUCTION_INDEXES = Set.of(3, 1);
+
+  private Path directory;
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("incremental-slice-results");
+    path = directory.resolve("results.txt.incremental");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    IncrementalSliceResults results = new IncrementalSliceResults(INSTRUCTION_INDEXES);
+    results.put("b/B.class", getClassHash("B"), List.of("B.first", "B.second"));
+    results.put("a/A.class", getClassHash("A"), List.of("A.first"));
+    results.put("c/C.class", getClassHash("C"), List.of());
+    results.write(path);
+
+    // The order of the slicing criterion does not matter
+    IncrementalSliceResults readResults = IncrementalSliceResults.read(path, Set.of(1, 3));
+    assertNotNull(readResults);
+    assertEquals(List.of("B.first", "B.second"), readResults.get("b/B.class", getClassHash("B")));
+    assertEquals(List.of("A.first"), readResults.get("a/A.class", getClassHash("A")));
+    assertEquals(List.of(), readResults.get("c/C.class", getClassHash("C")));
+    assertEquals(List.of("B.first", "B.second", "A.first"), readResults.getSliceResults());
+  }
+
+  @Test
+  public void changedClass() throws IOException {
+    IncrementalSliceResults results = new IncrementalSliceResults(INSTRUCTION_INDEXES);
+    results.put("a/A.class", getClassHash("A"), List.of("A.first"));
+    results.write(path);
+
+    IncrementalSliceResults readResults = IncrementalSliceResults.read(path, INSTRUCTION_INDEXES);
+    assertNull(readResults.get("a/A.class", getClassHash("changed A")));
+    assertNull(readResults.get("b/B.class", getClassHash("A")));
+  }
+
+  @Test
+  public void incompleteClass() throws IOException {
+    IncrementalSliceResults results = new IncrementalSliceResults(INSTRUCTION_INDEXES);
+    results.put("a/A.class", getClassHash("A"), List.of("A.first"), false);
+    results.put("b/B.class", getClassHash("B"), List.of("B.first"), true);
+    results.write(path);
+
+    // Results of an incomplete class are written but the class is sliced again
+    IncrementalSliceResults readResults = IncrementalSliceResults.read(path, INSTRUCTION_INDEXES);
+    assertNull(readResults.get("a/A.class", getClassHash("A")));
+    assertEquals(List.of("B.first"), readResults.get("b/B.class", getClassHash("B")));
+    assertEquals(List.of("A.first", "B.first"), readResults.getSliceResults());
+  }
+
+  @Test
+  public void differentCriterion() throws IOException {
+    IncrementalSliceResults results = new IncrementalSliceResults(INSTRUCTION_INDEXES);
+    results.put("a/A.class", getClassHash("A"), List.of("A.first"));
+    results.write(path);
+
+    assertNull(IncrementalSliceResults.read(path, Set.of(1)));
+    assertNull(IncrementalSliceResults.read(path, Set.of()));
+  }
+
+  @Test
+  public void missingOrInvalidFile() throws IOException {
+    assertNull(IncrementalSliceResults.read(path, INSTRUCTION_INDEXES));
+
+    Files.write(path, "no results".getBytes(StandardCharsets.UTF_8));
+    assertNull(IncrementalSliceResults.read(path, INSTRUCTION_INDEXES));
+  }
+
+  private static String getClassHash(String classFile) {
+    return IncrementalSliceResults.getClassHash(classFile.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,233 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import com.ibm.wala.shrike.shrikeBT.IInstruction;
+import com.ibm.wala.shrike.shrikeBT.ILoadInstruction;
+import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.Instrumenter;
+import de.uniks.vs.methodresourceprediction.slicer.SliceResult;
+import de.uniks.vs.methodresourceprediction.slicer.Slicer;
+import de.uniks.vs.methodresourceprediction.slicer.export.SliceWriter.ExportFormat;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.AppendingSliceWriter;
+import de.uniks.vs.methodresourceprediction.slicer.runtime.FeatureExecution;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+// Instruments the methods of InstrumenterValidation with the feature logger and runs them
+public class InstrumenterTest {
+  private static final String FEATURE_TABLE_FIELD = "$slicerFeatureTable";
+
+  private Path directory;
+  private Path inputJar;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("instrumenter");
+    inputJar = directory.resolve("validation.jar");
+    try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(inputJar))) {
+      for (Class<?> validationClass :
+          List.of(
+              InstrumenterValidation.class,
+              InstrumenterValidation.Initialized.class,
+              InstrumenterValidation.Scaling.class)) {
+        output.putNextEntry(new JarEntry(getEntryName(validationClass)));
+        output.write(getClassBytes(validationClass));
+        output.closeEntry();
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    AppendingSliceWriter.closeAll();
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  public void createStaticInitializer() throws Exception {
+    Path resultFile = directory.resolve("results.csv");
+    Class<?> instrumentedClass =
+        instrument(InstrumenterValidation.class, ExportFormat.CSV, resultFile);
+    assertFeatureTableField(instrumentedClass, Modifier.PRIVATE);
+
+    // Each execution is on disk when the method returns
+    int executionCount = invokeScale(instrumentedClass, 4);
+    List<String> lines = Files.readAllLines(resultFile, StandardCharsets.UTF_8);
+    assertEquals(2, lines.size());
+    assertEquals("execution_count,instruction_index,value", lines.get(0));
+    assertEquals(List.of(String.valueOf(executionCount), "0", "4.0"), decode(lines.get(1)));
+
+    invokeScale(instrumentedClass, 5);
+    lines = Files.readAllLines(resultFile, StandardCharsets.UTF_8);
+    assertEquals(3, lines.size());
+    assertEquals(List.of(String.valueOf(executionCount + 1), "0", "5.0"), decode(lines.get(2)));
+  }
+
+  @Test
+  public void patchStaticInitializer() throws Exception {
+    Path resultFile = directory.resolve("results.xml");
+    Class<?> instrumentedClass =
+        instrument(InstrumenterValidation.Initialized.class, ExportFormat.XML, resultFile);
+    assertFeatureTableField(instrumentedClass, Modifier.PRIVATE);
+
+    invokeScale(instrumentedClass, 6);
+    // The original static initializer still runs
+    assertEquals(3, instrumentedClass.getField("offset").getInt(null));
+
+    // The XML file is complete after every execution
+    invokeScale(instrumentedClass, 7);
+    Document document =
+        DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(resultFile.toFile());
+    NodeList values = document.getElementsByTagName("app:Value");
+    assertEquals(2, values.getLength());
+    assertEquals("6.0", values.item(0).getTextContent());
+    assertEquals("7.0", values.item(1).getTextContent());
+  }
+
+  @Test
+  public void interfaceField() throws Exception {
+    Class<?> instrumentedClass = instrument(InstrumenterValidation.Scaling.class, null, null);
+    assertTrue(instrumentedClass.isInterface());
+    assertFeatureTableField(instrumentedClass, Modifier.PUBLIC);
+
+    invokeScale(instrumentedClass, 7);
+  }
+
+  // Instruments the scale method with its parameter as feature and loads the instrumented class
+  private Class<?> instrument(Class<?> validationClass, ExportFormat exportFormat, Path resultFile)
+      throws IOException, InvalidClassFileException, DecoderException, ClassNotFoundException {
+    String methodSignature = "L" + validationClass.getName() + ";.scale(I)I";
+    Slicer slicer = new Slicer();
+    slicer.setInputJar(inputJar.toString());
+    slicer.setMethodSignature(methodSignature);
+    Set<Integer> instructionIndexes = Set.of(getParameterLoadIndex(slicer));
+    slicer.setInstructionIndexes(instructionIndexes);
+    SliceResult sliceResult = slicer.getSliceResult();
+
+    Path outputJar = directory.resolve("instrumented.jar");
+    Instrumenter instrumenter =
+        new Instrumenter(
+            "libs/",
+            inputJar.toString(),
+            outputJar.toString(),
+            methodSignature,
+            null,
+            resultFile != null ? resultFile.toString() : null,
+            exportFormat,
+            true);
+    instrumenter.instrument(
+        instructionIndexes,
+        sliceResult.getInstructionsToKeep(),
+        sliceResult.getInstructionsToIgnore(),
+        sliceResult.getInstructionPopMap(),
+        slicer.getVariableIndexesToRenumber(),
+        slicer.getControlFlow().getInstructionsInCycles());
+    instrumenter.finalize();
+
+    ClassLoader classLoader = new ValidationClassLoader(outputJar.toUri().toURL());
+    return Class.forName(validationClass.getName(), true, classLoader);
+  }
+
+  private static int getParameterLoadIndex(Slicer slicer)
+      throws IOException, InvalidClassFileException {
+    IInstruction[] instructions = slicer.getControlFlow().getMethodData().getInstructions();
+    for (int instructionIndex = 0; instructionIndex < instructions.length; instructionIndex++) {
+      IInstruction instruction = instructions[instructionIndex];
+      if (instruction instanceof ILoadInstruction
+          && ((ILoadInstruction) instruction).getVarIndex() == 0) {
+        return instructionIndex;
+      }
+    }
+    throw new IllegalStateException("Parameter is not loaded");
+  }
+
+  // Returns the execution count of the invocation
+  private static int invokeScale(Class<?> instrumentedClass, int factor) throws Exception {
+    FeatureExecution lastExecution = FeatureExecution.getLastExecution();
+    instrumentedClass.getMethod("scale", int.class).invoke(null, factor);
+
+    FeatureExecution execution = FeatureExecution.getLastExecution();
+    assertNotNull(execution);
+    assertNotSame(lastExecution, execution);
+    assertEquals(1, execution.getFeatures().size());
+    assertEquals(factor, execution.getFeatures().get(0).getValue(), 0d);
+    return execution.getExecutionCount();
+  }
+
+  private static void assertFeatureTableField(Class<?> instrumentedClass, int visibility)
+      throws NoSuchFieldException {
+    Field field = instrumentedClass.getDeclaredField(FEATURE_TABLE_FIELD);
+    assertEquals(
+        visibility | Modifier.STATIC | Modifier.FINAL,
+        field.getModifiers() & ~0x1000); // synthetic
+  }
+
+  private static List<String> decode(String line) {
+    Base64.Decoder decoder = Base64.getDecoder();
+    String[] values = line.split(",");
+    return List.of(
+        new String(decoder.decode(values[0]), StandardCharsets.UTF_8),
+        new String(decoder.decode(values[1]), StandardCharsets.UTF_8),
+        new String(decoder.decode(values[2]), StandardCharsets.UTF_8));
+  }
+
+  private static String getEntryName(Class<?> validationClass) {
+    return validationClass.getName().replace('.', '/') + ".class";
+  }
+
+  private static byte[] getClassBytes(Class<?> validationClass) throws IOException {
+    try (InputStream input =
+        validationClass.getResourceAsStream("/" + getEntryName(validationClass))) {
+      return input.readAllBytes();
+    }
+  }
+
+  // Loads the validation classes from the instrumented jar, the runtime classes of the slicer are
+  // shared with the test
+  private static class ValidationClassLoader extends URLClassLoader {
+    ValidationClassLoader(URL jar) {
+      super(new URL[] {jar}, InstrumenterTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith(InstrumenterValidation.class.getName())) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loadedClass = findLoadedClass(name);
+        if (loadedClass == null) {
+          loadedClass = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(loadedClass);
+        }
+        return loadedClass;
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+public class InstrumenterValidation {
+  // DO NOT CHANGE THESE METHODS
+  //
+  // Used for instrumentation tests. The methods do not branch, so the instrumented classes pass
+  // the verifier without stack map frames.
+
+  public static int scale(int factor) {
+    int scaled = factor * 2;
+    return scaled + 1;
+  }
+
+  public static class Initialized {
+    public static int offset = 3;
+
+    public static int scale(int factor) {
+      int scaled = factor * 2;
+      return scaled + offset;
+    }
+  }
+
+  public interface Scaling {
+    static int scale(int factor) {
+      int scaled = factor * 2;
+      return scaled + 1;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import com.ibm.wala.shrike.shrikeBT.shrikeCT.ClassInstrumenter;
+import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.JarClassIndex;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.uniks.vs.methodresourceprediction.slicer.test.JarTestUtilities.putDeflatedEntry;
+import static de.uniks.vs.methodresourceprediction.slicer.test.JarTestUtilities.putStoredEntry;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class JarClassIndexTest {
+  private static final String PACKAGE_PATH = "de/uniks/vs/methodresourceprediction/slicer/test/";
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("jar-class-index");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  public void storedEntry() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("stored.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putStoredEntry(
+          output, PACKAGE_PATH + "SlicerValidation.class", getClassBytes("SlicerValidation"));
+    }
+
+    assertClass(jar, "SlicerValidation");
+  }
+
+  @Test
+  public void deflatedEntry() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("deflated.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putDeflatedEntry(
+          output, PACKAGE_PATH + "SlicerValidation.class", getClassBytes("SlicerValidation"));
+    }
+
+    assertClass(jar, "SlicerValidation");
+  }
+
+  @Test
+  public void dataDescriptorEntry() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("data-descriptor.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      // Without sizes and CRC upfront the local header is followed by the data and a descriptor
+      output.putNextEntry(new ZipEntry(PACKAGE_PATH + "SlicerValidation.class"));
+      output.write(getClassBytes("SlicerValidation"));
+      output.closeEntry();
+    }
+
+    assertClass(jar, "SlicerValidation");
+  }
+
+  @Test
+  public void classIterator() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("classes.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putDeflatedEntry(
+          output,
+          PACKAGE_PATH + "DependencyValidation.class",
+          getClassBytes("DependencyValidation"));
+      putStoredEntry(output, "META-INF/resource.txt", new byte[] {1, 2, 3});
+      putStoredEntry(
+          output, PACKAGE_PATH + "SlicerValidation.class", getClassBytes("SlicerValidation"));
+      output.putNextEntry(new ZipEntry(PACKAGE_PATH + "AnalyzerValidation.class"));
+      output.write(getClassBytes("AnalyzerValidation"));
+      output.closeEntry();
+    }
+
+    JarClassIndex.ClassIterator classIterator = JarClassIndex.of(jar.toFile()).getClassIterator();
+    List<String> classNames = new ArrayList<>();
+    ClassInstrumenter classInstrumenter;
+    while ((classInstrumenter = classIterator.nextClass()) != null) {
+      String className = classInstrumenter.getReader().getName();
+      classNames.add(className);
+      assertEquals(className + ".class", classInstrumenter.getInputName());
+      assertArrayEquals(
+          getClassBytes(className.substring(PACKAGE_PATH.length())),
+          classInstrumenter.getReader().getBytes());
+    }
+    assertEquals(
+        List.of(
+            PACKAGE_PATH + "DependencyValidation",
+            PACKAGE_PATH + "SlicerValidation",
+            PACKAGE_PATH + "AnalyzerValidation"),
+        classNames);
+    assertNull(classIterator.nextClass());
+  }
+
+  @Test
+  public void prefixedEntry() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("prefixed.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putStoredEntry(
+          output,
+          "BOOT-INF/classes/" + PACKAGE_PATH + "SlicerValidation.class",
+          getClassBytes("SlicerValidation"));
+    }
+
+    JarClassIndex index = JarClassIndex.of(jar.toFile());
+    ClassInstrumenter classInstrumenter =
+        index.getClassInstrumenter(PACKAGE_PATH + "SlicerValidation");
+    assertEquals(
+        "BOOT-INF/classes/" + PACKAGE_PATH + "SlicerValidation.class",
+        classInstrumenter.getInputName());
+    assertArrayEquals(getClassBytes("SlicerValidation"), classInstrumenter.getReader().getBytes());
+    assertNull(index.getClassInstrumenter("SlicerValidation"));
+  }
+
+  @Test
+  public void swappedEntries() throws IOException, InvalidClassFileException {
+    Path jar = directory.resolve("swapped.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putStoredEntry(
+          output, PACKAGE_PATH + "SlicerValidation.class", getClassBytes("AnalyzerValidation"));
+      putStoredEntry(
+          output, PACKAGE_PATH + "AnalyzerValidation.class", getClassBytes("SlicerValidation"));
+    }
+
+    // The entry of the name declares another class, the class is found by its declared name
+    JarClassIndex index = JarClassIndex.of(jar.toFile());
+    ClassInstrumenter classInstrumenter =
+        index.getClassInstrumenter(PACKAGE_PATH + "SlicerValidation");
+    assertEquals(PACKAGE_PATH + "AnalyzerValidation.class", classInstrumenter.getInputName());
+    assertArrayEquals(getClassBytes("SlicerValidation"), classInstrumenter.getReader().getBytes());
+    assertNull(index.getClassInstrumenter(PACKAGE_PATH + "Missing"));
+  }
+
+  @Test
+  public void zip64Rejected() throws IOException {
+    Path jar = directory.resolve("zip64.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putStoredEntry(
+          output, PACKAGE_PATH + "SlicerValidation.class", getClassBytes("SlicerValidation"));
+    }
+
+    // A Zip64 jar stores the entry count in the Zip64 end of central directory record instead
+    byte[] bytes = Files.readAllBytes(jar);
+    ByteBuffer end = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    int endOffset = bytes.length - 22;
+    assertEquals(0x06054b50, end.getInt(endOffset));
+    end.putShort(endOffset + 8, (short) 0xffff);
+    end.putShort(endOffset + 10, (short) 0xffff);
+    Files.write(jar, bytes);
+
+    try {
+      JarClassIndex.of(jar.toFile());
+      fail("Zip64 jar was read");
+    } catch (IOException e) {
+      assertEquals("Zip64 jars are not supported: " + jar.toFile(), e.getMessage());
+    }
+  }
+
+  private static void assertClass(Path jar, String simpleName)
+      throws IOException, InvalidClassFileException {
+    JarClassIndex index = JarClassIndex.of(jar.toFile());
+    ClassInstrumenter classInstrumenter = index.getClassInstrumenter(PACKAGE_PATH + simpleName);
+    assertEquals(PACKAGE_PATH + simpleName + ".class", classInstrumenter.getInputName());
+    assertArrayEquals(getClassBytes(simpleName), classInstrumenter.getReader().getBytes());
+    assertNull(index.getClassInstrumenter(PACKAGE_PATH + "Missing"));
+  }
+
+  private static byte[] getClassBytes(String simpleName) throws IOException {
+    try (InputStream input = JarClassIndexTest.class.getResourceAsStream(simpleName + ".class")) {
+      return input.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes jar entries with a known layout for the tests of the jar reader and writer
+final class JarTestUtilities {
+  private JarTestUtilities() {}
+
+  static void putStoredEntry(ZipOutputStream output, String name, byte[] bytes)
+      throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(bytes.length);
+    entry.setCompressedSize(bytes.length);
+    entry.setCrc(getCrc(bytes));
+    output.putNextEntry(entry);
+    output.write(bytes);
+    output.closeEntry();
+  }
+
+  // With sizes and CRC upfront the local header contains them and no data descriptor is written
+  static void putDeflatedEntry(ZipOutputStream output, String name, byte[] bytes)
+      throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.DEFLATED);
+    entry.setSize(bytes.length);
+    entry.setCompressedSize(deflate(bytes).length);
+    entry.setCrc(getCrc(bytes));
+    output.putNextEntry(entry);
+    output.write(bytes);
+    output.closeEntry();
+  }
+
+  static long getCrc(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  // Same settings as the deflater of ZipOutputStream, so the compressed size matches
+  static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import de.uniks.vs.methodresourceprediction.slicer.loop.Loop;
+import de.uniks.vs.methodresourceprediction.slicer.loop.LoopNestingForest;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LoopNestingForestTest {
+  @Test
+  public void nestedLoops() {
+    // Two nested loops as generated by javac (goto to the condition at the loop end):
+    //  0: goto 8
+    //  1: goto 4     (inner loop start)
+    //  2: ...        (inner loop body)
+    //  3: ...
+    //  4: if -> 2    (inner loop condition)
+    //  5: ...
+    //  8: if -> 1    (outer loop condition)
+    //  9: return
+    Graph<Integer, DefaultEdge> cfg =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 9).forEach(i -> cfg.addVertex(i));
+    cfg.addEdge(0, 8);
+    cfg.addEdge(1, 4);
+    cfg.addEdge(2, 3);
+    cfg.addEdge(3, 4);
+    cfg.addEdge(4, 5);
+    cfg.addEdge(4, 2);
+    cfg.addEdge(5, 6);
+    cfg.addEdge(6, 7);
+    cfg.addEdge(7, 8);
+    cfg.addEdge(8, 9);
+    cfg.addEdge(8, 1);
+
+    LoopNestingForest loopNestingForest = new LoopNestingForest(cfg);
+    assertEquals(2, loopNestingForest.getLoops().size());
+    assertEquals(1, loopNestingForest.getTopLevelLoops().size());
+
+    Loop outerLoop = loopNestingForest.getTopLevelLoops().get(0);
+    assertEquals(8, outerLoop.getHeader());
+    assertEquals(Set.of(7), outerLoop.getLatches());
+    assertEquals(Set.of(9), outerLoop.getExits());
+    assertEquals(1, outerLoop.getLowestIndex());
+    assertEquals(8, outerLoop.getHighestIndex());
+
+    Loop innerLoop = loopNestingForest.getInnermostLoop(2);
+    assertEquals(outerLoop, innerLoop.getParent());
+    assertEquals(2, innerLoop.getDepth());
+    assertEquals(4, innerLoop.getHeader());
+    assertEquals(Set.of(3), innerLoop.getLatches());
+    assertEquals(Set.of(5), innerLoop.getExits());
+    assertEquals(List.of(2, 3, 4), List.copyOf(innerLoop.getInstructions()));
+
+    assertEquals(List.of(innerLoop, outerLoop), loopNestingForest.getLoopsForInstruction(3));
+    assertEquals(List.of(outerLoop), loopNestingForest.getLoopsForInstruction(6));
+    assertTrue(loopNestingForest.inSameLoop(2, 4));
+    assertFalse(loopNestingForest.inSameLoop(2, 6));
+    assertFalse(loopNestingForest.isInLoop(0));
+    assertNull(loopNestingForest.getInnermostLoop(9));
+    assertEquals(-1, loopNestingForest.getInnermostLoopId(42));
+    assertEquals(innerLoop.getId(), loopNestingForest.getInnermostLoopId(4));
+    assertEquals(
+        List.of(1, 2, 3, 4, 5, 6, 7, 8),
+        loopNestingForest.getInstructionsInLoops().stream().boxed().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void irreducibleLoop() {
+    // The cycle 1 <-> 2 can be entered at both instructions
+    Graph<Integer, DefaultEdge> cfg =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, 3).forEach(i -> cfg.addVertex(i));
+    cfg.addEdge(0, 1);
+    cfg.addEdge(0, 2);
+    cfg.addEdge(1, 2);
+    cfg.addEdge(2, 1);
+    cfg.addEdge(2, 3);
+
+    LoopNestingForest loopNestingForest = new LoopNestingForest(cfg);
+    assertEquals(1, loopNestingForest.getLoops().size());
+    Loop loop = loopNestingForest.getLoops().get(0);
+    assertFalse(loop.isReducible());
+    assertEquals(Set.of(1, 2), loop.getHeaders());
+    assertEquals(Set.of(1, 2), loop.getLatches());
+  }
+
+  @Test
+  public void loopWithManyBranches() {
+    // A loop around a chain of if-else diamonds has 2^30 simple cycles but only one loop
+    final int diamonds = 30;
+    final int end = 3 * diamonds;
+    Graph<Integer, DefaultEdge> cfg =
+        new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+    IntStream.rangeClosed(0, end + 1).forEach(i -> cfg.addVertex(i));
+    for (int diamond = 0; diamond < diamonds; diamond++) {
+      int branch = 3 * diamond;
+      cfg.addEdge(branch, branch + 1);
+      cfg.addEdge(branch, branch + 2);
+      cfg.addEdge(branch + 1, branch + 3);
+      cfg.addEdge(branch + 2, branch + 3);
+    }
+    cfg.addEdge(end, 0);
+    cfg.addEdge(end, end + 1);
+
+    LoopNestingForest loopNestingForest = new LoopNestingForest(cfg);
+    assertEquals(1, loopNestingForest.getLoops().size());
+    Loop loop = loopNestingForest.getLoops().get(0);
+    assertEquals(end + 1, loop.getInstructions().size());
+    assertEquals(Set.of(end), loop.getLatches());
+    assertTrue(loopNestingForest.inSameLoop(1, 2));
+  }
+}
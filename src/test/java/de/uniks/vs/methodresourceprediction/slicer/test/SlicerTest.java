@@ -3,9 +3,15 @@ package de.uniks.vs.methodresourceprediction.slicer.test;
 import com.ibm.wala.shrike.shrikeBT.*;
 import com.ibm.wala.shrike.shrikeBT.IInvokeInstruction.Dispatch;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
+import de.uniks.vs.methodresourceprediction.slicer.AnalysisCache;
+import de.uniks.vs.methodresourceprediction.slicer.Analyzer;
+import de.uniks.vs.methodresourceprediction.slicer.JarClassIndex;
+import de.uniks.vs.methodresourceprediction.slicer.SliceDependencies;
 import de.uniks.vs.methodresourceprediction.slicer.SliceResult;
 import de.uniks.vs.methodresourceprediction.slicer.Slicer;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,17 +20,26 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.codec.DecoderException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.jgrapht.io.ExportException;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SlicerTest {
@@ -2517,6 +2532,207 @@ public class SlicerTest {
         //		slicer.getControlDependency().writePlot(dir, "ControlDependency.png");
     }
 
+    @Test
+    public void testSliceAllMethods() throws IOException, InvalidClassFileException {
+        Map<String, SliceResult> sliceResults =
+                Slicer.getSliceResultsOfAllMethods(slicer.getInputJar(), Set.of(0), 2);
+        assertTrue(sliceResults.containsKey(
+                "Lde.uniks.vs.methodresourceprediction.slicer.test.SlicerValidation;.simpleReturnValue()I"));
+
+        for (Entry<String, SliceResult> sliceResultEntry : sliceResults.entrySet()) {
+            SliceResult expectedSliceResult =
+                    Slicer.getSliceResult(slicer.getInputJar(), sliceResultEntry.getKey(), Set.of(0));
+            assertTrue(sliceResultEntry.getKey(), expectedSliceResult.getInstructionsToKeep()
+                    .equals(sliceResultEntry.getValue().getInstructionsToKeep()));
+            assertTrue(sliceResultEntry.getKey(), expectedSliceResult.getInstructionPopMap()
+                    .equals(sliceResultEntry.getValue().getInstructionPopMap()));
+        }
+    }
+
+    @Test
+    public void testSliceAllMethodsReportsFailures() throws IOException, InvalidClassFileException {
+        String failingMethodSignature =
+                "Lde.uniks.vs.methodresourceprediction.slicer.test.SlicerValidation;.returnObject()Ljava/io/PrintStream;";
+        Path directory = Files.createTempDirectory("slicer-results-");
+        try {
+            // A non-empty directory in place of its cache entry makes slicing the method fail
+            AnalysisCache analysisCache = new AnalysisCache(directory.resolve("cache"));
+            byte[] classBytes =
+                    JarClassIndex.of(new File(slicer.getInputJar())).getDeclaringClassBytes(failingMethodSignature);
+            String cacheKey = analysisCache.getKey(classBytes, failingMethodSignature);
+            Files.createDirectories(analysisCache.getDirectory().resolve(cacheKey + ".dependencies").resolve("entry"));
+
+            Slicer allMethodsSlicer = new Slicer();
+            allMethodsSlicer.setInputJar(slicer.getInputJar());
+            allMethodsSlicer.setResultFilePath(directory.resolve("sliceResults.txt").toString());
+            allMethodsSlicer.setThreads(2);
+            allMethodsSlicer.setAnalysisCache(analysisCache);
+            allMethodsSlicer.makeSliceResultsFile();
+
+            Map<String, Exception> sliceFailures = allMethodsSlicer.getSliceFailures();
+            assertEquals(Set.of(failingMethodSignature), sliceFailures.keySet());
+            assertTrue(sliceFailures.get(failingMethodSignature) instanceof IOException);
+            List<String> sliceResultLines = Files.readAllLines(Path.of(allMethodsSlicer.getResultFilePath()));
+            assertFalse(sliceResultLines.isEmpty());
+            for (String sliceResult : sliceResultLines) {
+                assertFalse(sliceResult.contains(failingMethodSignature));
+            }
+
+            // The class of the failed method is incomplete, an incremental run slices it again
+            allMethodsSlicer.setIncremental(true);
+            allMethodsSlicer.makeSliceResultsFile();
+            assertEquals(Set.of(failingMethodSignature), allMethodsSlicer.getSliceFailures().keySet());
+            assertEquals(sliceResultLines, Files.readAllLines(Path.of(allMethodsSlicer.getResultFilePath())));
+
+            // Without the cache the method can be sliced
+            Map<String, Exception> staticSliceFailures = new HashMap<>();
+            Map<String, SliceResult> sliceResults = Slicer.getSliceResultsOfAllMethods(
+                    slicer.getInputJar(), Set.of(), 2, staticSliceFailures);
+            assertTrue(staticSliceFailures.isEmpty());
+            assertTrue(sliceResults.containsKey(failingMethodSignature));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void testAnalysisCache() throws IOException, InvalidClassFileException {
+        String methodSignature =
+                "Lde.uniks.vs.methodresourceprediction.slicer.test.SlicerValidation;.simpleMethodCallAndLoopWithParameter(J)V";
+        Path cacheDirectory = Files.createTempDirectory("slicer-cache-");
+        try {
+            for (int instructionIndex = 0;
+                 instructionIndex < Analyzer.getInstructions(new File(slicer.getInputJar()), methodSignature).length;
+                 instructionIndex++) {
+                SliceResult expectedSliceResult =
+                        Slicer.getSliceResult(slicer.getInputJar(), methodSignature, Set.of(instructionIndex));
+
+                // The first slicer fills the cache, the second one reads from it
+                for (int run = 0; run < 2; run++) {
+                    Slicer cachedSlicer = new Slicer();
+                    cachedSlicer.setInputJar(slicer.getInputJar());
+                    cachedSlicer.setMethodSignature(methodSignature);
+                    cachedSlicer.setInstructionIndexes(Set.of(instructionIndex));
+                    cachedSlicer.setAnalysisCache(new AnalysisCache(cacheDirectory));
+                    SliceResult sliceResult = cachedSlicer.getSliceResult();
+
+                    assertEquals(expectedSliceResult.getInstructionsToKeep(), sliceResult.getInstructionsToKeep());
+                    assertEquals(expectedSliceResult.getInstructionsToIgnore(), sliceResult.getInstructionsToIgnore());
+                    assertEquals(expectedSliceResult.getInstructionPopMap(), sliceResult.getInstructionPopMap());
+                    assertEquals(
+                            expectedSliceResult.getInstructionsToKeep(), cachedSlicer.getInstructionIndexesToKeep());
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void testAnalysisCacheStoresComputedDependencies() throws IOException, InvalidClassFileException {
+        String methodSignature =
+                "Lde.uniks.vs.methodresourceprediction.slicer.test.SlicerValidation;.simpleMethodCallAndLoopWithParameter(J)V";
+        Path cacheDirectory = Files.createTempDirectory("slicer-cache-");
+        try {
+            AnalysisCache analysisCache = new AnalysisCache(cacheDirectory);
+            Slicer cachedSlicer = new Slicer();
+            cachedSlicer.setInputJar(slicer.getInputJar());
+            cachedSlicer.setMethodSignature(methodSignature);
+            cachedSlicer.setInstructionIndexes(Set.of(0));
+            cachedSlicer.setAnalysisCache(analysisCache);
+            cachedSlicer.getSliceResult();
+
+            // Only the dependencies needed for the slice are computed and stored
+            byte[] classBytes =
+                    JarClassIndex.of(new File(slicer.getInputJar())).getDeclaringClassBytes(methodSignature);
+            int[][] dependencies =
+                    analysisCache.readDependencies(analysisCache.getKey(classBytes, methodSignature)).getDependencies();
+            slicer.setMethodSignature(methodSignature);
+            SliceDependencies sliceDependencies = slicer.getSliceDependencies();
+            int computedDependencies = 0;
+            for (int index = 0; index < dependencies.length; index++) {
+                if (dependencies[index] != null) {
+                    assertArrayEquals(sliceDependencies.getDependencies(index), dependencies[index]);
+                    computedDependencies++;
+                }
+            }
+            assertTrue(computedDependencies > 0);
+            assertTrue(computedDependencies < dependencies.length);
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void testAnalysisCacheIgnoresCorruptedEntries() throws IOException, InvalidClassFileException {
+        String methodSignature =
+                "Lde.uniks.vs.methodresourceprediction.slicer.test.SlicerValidation;.simpleMethodCallAndLoopWithParameter(J)V";
+        Path cacheDirectory = Files.createTempDirectory("slicer-cache-");
+        try {
+            AnalysisCache analysisCache = new AnalysisCache(cacheDirectory);
+            SliceResult expectedSliceResult = getCachedSliceResult(analysisCache, methodSignature);
+            byte[] classBytes =
+                    JarClassIndex.of(new File(slicer.getInputJar())).getDeclaringClassBytes(methodSignature);
+            String cacheKey = analysisCache.getKey(classBytes, methodSignature);
+            Path dependenciesFile = cacheDirectory.resolve(cacheKey + ".dependencies");
+            Path sliceFile;
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                sliceFile = files.filter(file -> file.toString().endsWith(".slice")).findFirst().get();
+            }
+            // The entries start with the format version
+            int formatVersion;
+            try (DataInputStream input =
+                         new DataInputStream(new GZIPInputStream(Files.newInputStream(dependenciesFile)))) {
+                formatVersion = input.readInt();
+            }
+
+            // Negative and too large lengths, an out of range instruction index and a missing set
+            List<int[]> corruptedDependencies = List.of(
+                    new int[] {formatVersion, -5},
+                    new int[] {formatVersion, Integer.MAX_VALUE},
+                    new int[] {formatVersion, 2, -7},
+                    new int[] {formatVersion, 2, 1, 5, -1, -1, -1});
+            for (int[] corruptedEntry : corruptedDependencies) {
+                writeCacheEntry(dependenciesFile, corruptedEntry);
+                assertNull(analysisCache.readDependencies(cacheKey));
+            }
+            List<int[]> corruptedSlices = List.of(
+                    new int[] {formatVersion, -1, 0, 0},
+                    new int[] {formatVersion, 0, 0, Integer.MIN_VALUE});
+            for (int[] corruptedEntry : corruptedSlices) {
+                writeCacheEntry(sliceFile, corruptedEntry);
+                assertNull(analysisCache.readSlice(cacheKey, Set.of(0)));
+            }
+
+            // The slicer computes the slice again
+            SliceResult sliceResult = getCachedSliceResult(analysisCache, methodSignature);
+            assertEquals(expectedSliceResult.getInstructionsToKeep(), sliceResult.getInstructionsToKeep());
+            assertEquals(expectedSliceResult.getInstructionsToIgnore(), sliceResult.getInstructionsToIgnore());
+            assertEquals(expectedSliceResult.getInstructionPopMap(), sliceResult.getInstructionPopMap());
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory.toFile());
+        }
+    }
+
+    private SliceResult getCachedSliceResult(AnalysisCache analysisCache, String methodSignature)
+            throws IOException, InvalidClassFileException {
+        Slicer cachedSlicer = new Slicer();
+        cachedSlicer.setInputJar(slicer.getInputJar());
+        cachedSlicer.setMethodSignature(methodSignature);
+        cachedSlicer.setInstructionIndexes(Set.of(0));
+        cachedSlicer.setAnalysisCache(analysisCache);
+        return cachedSlicer.getSliceResult();
+    }
+
+    private static void writeCacheEntry(Path file, int[] values) throws IOException {
+        try (DataOutputStream output =
+                     new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            for (int value : values) {
+                output.writeInt(value);
+            }
+        }
+    }
+
     private void validateSliceResults(Map<Set<Integer>, List<IInstruction>> slicerCriterionResultMap)
             throws IOException, InvalidClassFileException {
         // Debug code generation output
@@ -2556,6 +2772,33 @@ public class SlicerTest {
                     resultList.equals(sliceResult.getSlice()));
         }
 
+        // The batch API must produce the same slices
+        List<Set<Integer>> criterionSets = new ArrayList<>(slicerCriterionResultMap.keySet());
+        List<SliceResult> sliceResults = slicer.getSliceResults(criterionSets, true);
+        for (int criterion = 0; criterion < criterionSets.size(); criterion++) {
+            Set<Integer> criterionSet = criterionSets.get(criterion);
+            List<IInstruction> resultList = slicerCriterionResultMap.get(criterionSet);
+            assertTrue(
+                    "Expected batch slice from "
+                            + criterionSet
+                            + " \n  "
+                            + resultList
+                            + "\nbut is\n  "
+                            + sliceResults.get(criterion).getSlice(),
+                    resultList.equals(sliceResults.get(criterion).getSlice()));
+        }
+
+        // The slice table must contain the same slices as slicing every instruction on its own
+        BitSet[] indexesToKeepTable = slicer.getInstructionIndexesToKeepTable();
+        for (int instructionIndex = 0; instructionIndex < indexesToKeepTable.length; instructionIndex++) {
+            slicer.setInstructionIndexes(Set.of(instructionIndex));
+            Set<Integer> indexesToKeep = new HashSet<>();
+            indexesToKeepTable[instructionIndex].stream().forEach(indexesToKeep::add);
+            assertTrue(
+                    "Slice table differs for instruction index: [" + instructionIndex + "]",
+                    indexesToKeep.equals(slicer.getInstructionIndexesToKeep()));
+        }
+
         for (int instructionIndex = 0;
              instructionIndex < slicer.getControlFlow().getMethodData().getInstructions().length;
              instructionIndex++) {
@@ -0,0 +1,174 @@
+package de.uniks.vs.methodresourceprediction.slicer.test;
+
+import de.uniks.vs.methodresourceprediction.slicer.StreamingJarWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.uniks.vs.methodresourceprediction.slicer.test.JarTestUtilities.getCrc;
+import static de.uniks.vs.methodresourceprediction.slicer.test.JarTestUtilities.putDeflatedEntry;
+import static de.uniks.vs.methodresourceprediction.slicer.test.JarTestUtilities.putStoredEntry;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingJarWriterTest {
+  private static final byte[] STORED_BYTES = getBytes("stored", 100);
+  private static final byte[] DEFLATED_BYTES = getBytes("deflated", 1000);
+  private static final byte[] DATA_DESCRIPTOR_BYTES = getBytes("data descriptor", 1000);
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("streaming-jar-writer");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  public void copyEntries() throws IOException {
+    Path sourceJar = writeSourceJar();
+    Path jar = directory.resolve("copy.jar");
+    try (StreamingJarWriter writer = new StreamingJarWriter(jar.toFile())) {
+      writer.copyEntries(sourceJar.toFile(), entryName -> !entryName.equals("filtered.txt"));
+    }
+
+    Map<String, byte[]> expectedEntries = new LinkedHashMap<>();
+    expectedEntries.put("stored.txt", STORED_BYTES);
+    expectedEntries.put("deflated.txt", DEFLATED_BYTES);
+    expectedEntries.put("descriptor.txt", DATA_DESCRIPTOR_BYTES);
+    assertJarFile(jar, expectedEntries);
+    assertJarStream(jar, expectedEntries);
+  }
+
+  @Test
+  public void skipDuplicates() throws IOException {
+    Path sourceJar = writeSourceJar();
+    byte[] newBytes = "new".getBytes(StandardCharsets.UTF_8);
+    Path jar = directory.resolve("duplicates.jar");
+    try (StreamingJarWriter writer = new StreamingJarWriter(jar.toFile())) {
+      assertTrue(writer.putEntry("deflated.txt", newBytes));
+      assertFalse(writer.putEntry("deflated.txt", STORED_BYTES));
+      assertTrue(writer.contains("deflated.txt"));
+      writer.copyEntries(sourceJar.toFile(), entryName -> true);
+      // The second copy of a jar adds nothing
+      writer.copyEntries(sourceJar.toFile(), entryName -> true);
+    }
+
+    Map<String, byte[]> expectedEntries = new LinkedHashMap<>();
+    expectedEntries.put("deflated.txt", newBytes);
+    expectedEntries.put("stored.txt", STORED_BYTES);
+    expectedEntries.put("descriptor.txt", DATA_DESCRIPTOR_BYTES);
+    expectedEntries.put("filtered.txt", STORED_BYTES);
+    assertJarFile(jar, expectedEntries);
+    assertJarStream(jar, expectedEntries);
+  }
+
+  @Test
+  public void manifestFirst() throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "Main");
+    ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+    manifest.write(manifestBytes);
+
+    Path sourceJar = writeSourceJar();
+    Path jar = directory.resolve("manifest.jar");
+    try (StreamingJarWriter writer = new StreamingJarWriter(jar.toFile())) {
+      writer.putEntry(JarFile.MANIFEST_NAME, manifestBytes.toByteArray());
+      writer.copyEntries(sourceJar.toFile(), entryName -> true);
+    }
+
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      assertEquals("Main", jarFile.getManifest().getMainAttributes().getValue("Main-Class"));
+      assertEquals(JarFile.MANIFEST_NAME, jarFile.entries().nextElement().getName());
+    }
+    // Reading a jar as a stream finds the manifest only if it is the first entry
+    try (JarInputStream input = new JarInputStream(Files.newInputStream(jar))) {
+      assertNotNull(input.getManifest());
+      assertEquals("Main", input.getManifest().getMainAttributes().getValue("Main-Class"));
+      assertEquals("stored.txt", input.getNextJarEntry().getName());
+    }
+  }
+
+  // Stored, deflated (sizes in the local header) and deflated (sizes in a data descriptor) entries
+  private Path writeSourceJar() throws IOException {
+    Path sourceJar = directory.resolve("source.jar");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(sourceJar))) {
+      putStoredEntry(output, "stored.txt", STORED_BYTES);
+      putDeflatedEntry(output, "deflated.txt", DEFLATED_BYTES);
+
+      output.putNextEntry(new ZipEntry("descriptor.txt"));
+      output.write(DATA_DESCRIPTOR_BYTES);
+
+      output.putNextEntry(new ZipEntry("filtered.txt"));
+      output.write(STORED_BYTES);
+      output.closeEntry();
+    }
+    return sourceJar;
+  }
+
+  // Reading an entry of a JarFile verifies its CRC
+  private static void assertJarFile(Path jar, Map<String, byte[]> expectedEntries)
+      throws IOException {
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      List<String> entryNames = new ArrayList<>();
+      for (JarEntry entry : Collections.list(jarFile.entries())) {
+        entryNames.add(entry.getName());
+        byte[] bytes;
+        try (InputStream input = jarFile.getInputStream(entry)) {
+          bytes = input.readAllBytes();
+        }
+        assertArrayEquals(expectedEntries.get(entry.getName()), bytes);
+        assertEquals(getCrc(bytes), entry.getCrc());
+        assertEquals(bytes.length, entry.getSize());
+      }
+      assertEquals(new ArrayList<>(expectedEntries.keySet()), entryNames);
+    }
+  }
+
+  // A stream reader relies on the local headers, it verifies their sizes and CRCs
+  private static void assertJarStream(Path jar, Map<String, byte[]> expectedEntries)
+      throws IOException {
+    try (JarInputStream input = new JarInputStream(Files.newInputStream(jar))) {
+      List<String> entryNames = new ArrayList<>();
+      JarEntry entry;
+      while ((entry = input.getNextJarEntry()) != null) {
+        entryNames.add(entry.getName());
+        byte[] bytes = input.readAllBytes();
+        assertArrayEquals(expectedEntries.get(entry.getName()), bytes);
+        assertEquals(getCrc(bytes), entry.getCrc());
+      }
+      assertEquals(new ArrayList<>(expectedEntries.keySet()), entryNames);
+    }
+  }
+
+  private static byte[] getBytes(String text, int repetitions) {
+    return (text + "\n").repeat(repetitions).getBytes(StandardCharsets.UTF_8);
+  }
+}